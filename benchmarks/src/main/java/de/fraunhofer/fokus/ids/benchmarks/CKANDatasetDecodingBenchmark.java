@@ -0,0 +1,49 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.models.CKANDataset;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of package_show results into CKANDataset. parseAndMap is the path taken by the adapter, the response
+ * body is parsed into a JsonObject by the CKAN service and mapped by DataAssetService.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CKANDatasetDecodingBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int resources;
+
+    private JsonObject json;
+    private Buffer body;
+
+    @Setup
+    public void setup() {
+        json = Stubs.ckanPackage(Stubs.PACKAGE_PREFIX + resources, resources, "http://localhost");
+        body = json.toBuffer();
+    }
+
+    @Benchmark
+    public CKANDataset mapTo() {
+        return json.mapTo(CKANDataset.class);
+    }
+
+    @Benchmark
+    public CKANDataset decodeBuffer() {
+        return Json.decodeValue(body, CKANDataset.class);
+    }
+
+    @Benchmark
+    public CKANDataset parseAndMap() {
+        return new JsonObject(body).mapTo(CKANDataset.class);
+    }
+}
@@ -0,0 +1,64 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.messages.DataAssetCreateMessage;
+import de.fraunhofer.fokus.ids.services.DataAssetService;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end create path of DataAssetService: package_show and the concurrent resource_show probe against a stub
+ * CKAN, a HEAD probe per resource and the access information batch against a stub database. With caches enabled,
+ * repeated creations are served from the CKAN response and file name caches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CreateDataAssetBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int resources;
+
+    @Param({"false", "true"})
+    public boolean caches;
+
+    private Vertx vertx;
+    private Context context;
+    private DataAssetService dataAssetService;
+    private DataAssetCreateMessage message;
+
+    @Setup
+    public void setup() {
+        vertx = Vertx.vertx();
+        StubDatabaseService.bind(vertx);
+        int port = Stubs.startCkan(vertx, 0);
+        JsonObject config = new JsonObject()
+                .put("CKAN_CACHE_SIZE", caches ? 1000 : 0)
+                .put("FILENAME_CACHE_SIZE", caches ? 10000 : 0);
+        context = vertx.getOrCreateContext();
+        dataAssetService = Stubs.onContext(context, () -> new DataAssetService(vertx, config));
+        message = Json.decodeValue(new JsonObject()
+                .put("dataSource", new JsonObject()
+                        .put("id", 1)
+                        .put("data", new JsonObject().put("ckanApiUrl", "http://localhost:" + port + "/api/3/action")))
+                .put("data", new JsonObject().put("resourceId", Stubs.PACKAGE_PREFIX + resources))
+                .encode(), DataAssetCreateMessage.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Stubs.<Void>await(vertx::close);
+    }
+
+    @Benchmark
+    public JsonObject createDataAsset() {
+        return Stubs.await(h -> context.runOnContext(v -> dataAssetService.createDataAsset(message, h)));
+    }
+}
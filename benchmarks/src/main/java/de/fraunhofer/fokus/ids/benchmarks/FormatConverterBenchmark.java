@@ -0,0 +1,57 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.services.conversion.FormatConverter;
+import de.fraunhofer.fokus.ids.services.conversion.FormatConverters;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the streaming CSV converters on a CSV of about 10 MB delivered in 8 KB chunks, as received from a
+ * data host.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FormatConverterBenchmark {
+
+    private static final int ROWS = 200000;
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"JSON", "XML"})
+    public String target;
+
+    private List<Buffer> chunks;
+
+    @Setup
+    public void setup() {
+        StringBuilder csv = new StringBuilder("id,station,timestamp,value,comment\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append(i).append(",Station ").append(i % 100).append(",2020-06-01T12:00:00,")
+                    .append(i * 0.25).append(",\"quoted, with \"\"escapes\"\"\"\n");
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        chunks = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            chunks.add(Buffer.buffer(Arrays.copyOfRange(bytes, offset, Math.min(bytes.length, offset + CHUNK_SIZE))));
+        }
+    }
+
+    @Benchmark
+    public void convert(Blackhole blackhole) {
+        FormatConverter converter = FormatConverters.create(FormatConverters.CSV, target);
+        for (Buffer chunk : chunks) {
+            blackhole.consume(converter.convert(chunk));
+        }
+        blackhole.consume(converter.end());
+    }
+}
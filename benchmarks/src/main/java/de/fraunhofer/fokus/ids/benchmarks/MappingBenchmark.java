@@ -0,0 +1,70 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.models.CKANDataset;
+import de.fraunhofer.fokus.ids.models.CKANResource;
+import de.fraunhofer.fokus.ids.persistence.entities.Dataset;
+import de.fraunhofer.fokus.ids.persistence.entities.Distribution;
+import de.fraunhofer.fokus.ids.services.DataAssetMapper;
+import de.fraunhofer.fokus.ids.services.FileService;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of a CKANDataset to the Dataset and Distribution entities. The file names of all resources are probed once
+ * during setup, so buildDistribution is answered from the file name cache and measures the mapping only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int resources;
+
+    private Vertx vertx;
+    private DataAssetMapper dataAssetMapper;
+    private CKANDataset ckanDataset;
+
+    @Setup
+    public void setup() {
+        vertx = Vertx.vertx();
+        int port = Stubs.startCkan(vertx, 0);
+        ckanDataset = Stubs.ckanPackage(Stubs.PACKAGE_PREFIX + resources, resources, "http://localhost:" + port)
+                .mapTo(CKANDataset.class);
+        Context context = vertx.getOrCreateContext();
+        dataAssetMapper = Stubs.onContext(context, () -> new DataAssetMapper(new FileService(vertx, new JsonObject())));
+        Dataset dataset = dataAssetMapper.buildDataset(ckanDataset);
+        for (CKANResource resource : ckanDataset.resources) {
+            Stubs.<Distribution>await(h -> context.runOnContext(v -> dataAssetMapper.buildDistribution(resource, dataset, h)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Stubs.<Void>await(vertx::close);
+    }
+
+    @Benchmark
+    public Dataset buildDataset() {
+        return dataAssetMapper.buildDataset(ckanDataset);
+    }
+
+    @Benchmark
+    public List<Distribution> buildDistributions() {
+        Dataset dataset = dataAssetMapper.buildDataset(ckanDataset);
+        List<Distribution> distributions = new ArrayList<>(ckanDataset.resources.size());
+        for (CKANResource resource : ckanDataset.resources) {
+            dataAssetMapper.buildDistribution(resource, dataset, reply -> distributions.add(reply.result()));
+        }
+        return distributions;
+    }
+}
@@ -0,0 +1,95 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.services.FileService;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of FileService.streamFile between a stub data host and a client on the same machine. direct downloads
+ * the same file from the data host and is the baseline for the overhead of the adapter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StreamFileBenchmark {
+
+    @Param({"1048576", "67108864"})
+    public int size;
+
+    private Vertx vertx;
+    private HttpClient client;
+    private int upstreamPort;
+    private int adapterPort;
+
+    @Setup
+    public void setup() {
+        vertx = Vertx.vertx();
+        StubDatabaseService.bind(vertx);
+        upstreamPort = Stubs.startCkan(vertx, size);
+        String url = "http://localhost:" + upstreamPort + "/files/data.csv";
+        AdapterVerticle adapter = new AdapterVerticle(url);
+        Stubs.<String>await(h -> vertx.deployVerticle(adapter, h));
+        adapterPort = adapter.port;
+        client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true));
+    }
+
+    @TearDown
+    public void tearDown() {
+        Stubs.<Void>await(vertx::close);
+    }
+
+    @Benchmark
+    public long streamFile() {
+        return download(adapterPort);
+    }
+
+    @Benchmark
+    public long direct() {
+        return download(upstreamPort);
+    }
+
+    private long download(int port) {
+        return Stubs.await(h -> client.request(HttpMethod.GET, port, "localhost", "/files/data.csv", response -> {
+            long[] bytes = new long[1];
+            response.handler(buffer -> bytes[0] += buffer.length());
+            response.endHandler(v -> h.handle(Future.succeededFuture(bytes[0])));
+            response.exceptionHandler(t -> h.handle(Future.failedFuture(t)));
+        }).exceptionHandler(t -> h.handle(Future.failedFuture(t))).end());
+    }
+
+    private static class AdapterVerticle extends AbstractVerticle {
+        private final String url;
+        private volatile int port;
+
+        private AdapterVerticle(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public void start(Promise<Void> startPromise) {
+            FileService fileService = new FileService(vertx, new JsonObject());
+            vertx.createHttpServer()
+                    .requestHandler(request -> fileService.streamFile(url, "distribution", request))
+                    .listen(0, reply -> {
+                        if (reply.succeeded()) {
+                            port = reply.result().actualPort();
+                            startPromise.complete();
+                        } else {
+                            startPromise.fail(reply.cause());
+                        }
+                    });
+        }
+    }
+}
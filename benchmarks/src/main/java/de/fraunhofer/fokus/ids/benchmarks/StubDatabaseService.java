@@ -0,0 +1,67 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.services.Constants;
+import de.fraunhofer.fokus.ids.services.database.DatabaseService;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceBinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DatabaseService answering every call immediately, so benchmarks measure the adapter and the event bus instead of
+ * SQLite.
+ */
+public class StubDatabaseService implements DatabaseService {
+
+    /**
+     * Binds a stub service to the address used by the adapter's proxies.
+     */
+    public static void bind(Vertx vertx) {
+        new ServiceBinder(vertx)
+                .setAddress(Constants.DATABASE_SERVICE)
+                .register(DatabaseService.class, new StubDatabaseService());
+    }
+
+    @Override
+    public DatabaseService query(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+        return this;
+    }
+
+    @Override
+    public DatabaseService update(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+        return this;
+    }
+
+    @Override
+    public DatabaseService batchUpdate(String query, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(new ArrayList<>(Collections.nCopies(params.size(), 1))));
+        return this;
+    }
+
+    @Override
+    public DatabaseService batch(List<String> queries, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(new ArrayList<>(Collections.nCopies(queries.size(), 0))));
+        return this;
+    }
+
+    @Override
+    public DatabaseService transaction(List<String> queries, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(new ArrayList<>(Collections.nCopies(queries.size(), 1))));
+        return this;
+    }
+
+    @Override
+    public DatabaseService migrate(int version, List<String> statements, Handler<AsyncResult<Boolean>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(false));
+        return this;
+    }
+}
@@ -0,0 +1,141 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-process stand-ins for a CKAN portal and its data hosts, plus helpers to wait for asynchronous results from the
+ * benchmark thread.
+ */
+public class Stubs {
+
+    public static final String PACKAGE_PREFIX = "pkg-";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private Stubs() {
+    }
+
+    /**
+     * @param id package id
+     * @param resources number of resources
+     * @param baseUrl base URL of the file server the resources point to
+     * @return a package_show result with the given number of resources
+     */
+    public static JsonObject ckanPackage(String id, int resources, String baseUrl) {
+        JsonArray tags = new JsonArray();
+        for (int i = 0; i < 5; i++) {
+            tags.add(new JsonObject().put("name", "tag" + i).put("display_name", "Tag " + i));
+        }
+        JsonArray resourceArray = new JsonArray();
+        for (int i = 0; i < resources; i++) {
+            resourceArray.add(new JsonObject()
+                    .put("id", id + "-res-" + i)
+                    .put("package_id", id)
+                    .put("name", "Resource " + i)
+                    .put("description", "Measurements of station " + i + " in CSV format.")
+                    .put("format", "CSV")
+                    .put("url", baseUrl + "/files/" + id + "-res-" + i + ".csv")
+                    .put("created", "2020-06-01T12:00:00.000000")
+                    .put("size", 1024 * i));
+        }
+        return new JsonObject()
+                .put("id", id)
+                .put("name", id)
+                .put("title", "Benchmark package " + id)
+                .put("notes", "Package with " + resources + " resources used for benchmarking the adapter.")
+                .put("license_url", "http://dcat-ap.de/def/licenses/cc-by/4.0")
+                .put("license_title", "Creative Commons Namensnennung 4.0 International")
+                .put("version", "1.0")
+                .put("metadata_modified", "2020-06-01T12:00:00.000000")
+                .put("organization", new JsonObject().put("name", "benchmark").put("title", "Benchmark"))
+                .put("tags", tags)
+                .put("resources", resourceArray);
+    }
+
+    /**
+     * Starts a server answering package_show for ids "pkg-&lt;number of resources&gt;" and serving HEAD and GET
+     * requests for the resource files with a body of fileSize bytes.
+     * @return port of the server
+     */
+    public static int startCkan(Vertx vertx, int fileSize) {
+        Map<String, Buffer> packages = new ConcurrentHashMap<>();
+        Buffer file = Buffer.buffer(new byte[fileSize]);
+        int[] port = new int[1];
+        port[0] = listen(vertx, request -> {
+            String path = request.path();
+            if (path.startsWith("/files/")) {
+                String filename = path.substring("/files/".length());
+                request.response()
+                        .putHeader("Content-Type", "text/csv")
+                        .putHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+                if (request.method() == HttpMethod.HEAD) {
+                    request.response().putHeader("Content-Length", String.valueOf(fileSize)).end();
+                } else {
+                    request.response().end(file);
+                }
+            } else if (path.endsWith("/package_show")) {
+                String id = request.getParam("id");
+                Buffer body = packages.computeIfAbsent(id, key -> new JsonObject()
+                        .put("success", true)
+                        .put("result", ckanPackage(key, Integer.parseInt(key.substring(PACKAGE_PREFIX.length())),
+                                "http://localhost:" + port[0]))
+                        .toBuffer());
+                request.response().putHeader("Content-Type", "application/json").end(body);
+            } else {
+                request.response().setStatusCode(404).end();
+            }
+        });
+        return port[0];
+    }
+
+    /**
+     * Starts a server on a free port and waits until it is listening.
+     * @return port of the server
+     */
+    public static int listen(Vertx vertx, Handler<HttpServerRequest> handler) {
+        HttpServer server = await(h -> vertx.createHttpServer().requestHandler(handler).listen(0, h));
+        return server.actualPort();
+    }
+
+    /**
+     * Runs the supplier on the given context and waits for its result, e.g. to create a service bound to the context.
+     */
+    public static <T> T onContext(Context context, Supplier<T> supplier) {
+        return await(h -> context.runOnContext(v -> h.handle(Future.succeededFuture(supplier.get()))));
+    }
+
+    /**
+     * Starts an asynchronous operation and waits for its result.
+     */
+    public static <T> T await(Consumer<Handler<AsyncResult<T>>> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        operation.accept(reply -> {
+            if (reply.succeeded()) {
+                future.complete(reply.result());
+            } else {
+                future.completeExceptionally(reply.cause());
+            }
+        });
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.fraunhofer.fokus.ids.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+
+/**
+ * Collects the latencies of one kind of request. Not thread-safe, all requests of the driver complete on its
+ * event loop.
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+    private long bytes;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param nanos latency of the request
+     * @param success false if the request failed or returned an error status
+     * @param bytes size of the response body
+     */
+    public void record(long nanos, boolean success, long bytes) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+        if (!success) {
+            errors++;
+        }
+        this.bytes += bytes;
+    }
+
+    /**
+     * @param seconds duration of the measurement, used to compute the throughput
+     */
+    public JsonObject summary(double seconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return new JsonObject()
+                .put("name", name)
+                .put("requests", count)
+                .put("errors", errors)
+                .put("p50Millis", percentile(sorted, 0.5))
+                .put("p90Millis", percentile(sorted, 0.9))
+                .put("p99Millis", percentile(sorted, 0.99))
+                .put("maxMillis", count == 0 ? 0.0 : sorted[count - 1] / 1e6)
+                .put("requestsPerSecond", count / seconds)
+                .put("megabytesPerSecond", bytes / seconds / 1e6);
+    }
+
+    private double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,211 @@
+package de.fraunhofer.fokus.ids.loadtest;
+
+import de.fraunhofer.fokus.ids.benchmarks.Stubs;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Drives /create and /getFile of a running adapter. Every package of the mock CKAN is created once to learn the
+ * distributions, afterwards requests are started at a fixed rate, independent of the response times, for the
+ * configured duration. The results are published on the event bus afterwards.
+ */
+public class LoadDriverVerticle extends AbstractVerticle {
+    private final Logger LOGGER = LoggerFactory.getLogger(LoadDriverVerticle.class.getName());
+
+    public static final String RESULT_ADDRESS = "de.fraunhofer.fokus.ids.loadtest.result";
+
+    private static final long TICK_MILLIS = 10;
+    private static final int PREPARE_CONCURRENCY = 4;
+
+    private final Random random = new Random();
+    private final List<JsonObject> distributions = new ArrayList<>();
+    private final LatencyRecorder creates = new LatencyRecorder("create");
+    private final LatencyRecorder files = new LatencyRecorder("getFile");
+    private HttpClient client;
+    private JsonObject options;
+    private String adapter;
+    private int outstanding;
+    private long dropped;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        options = config();
+        adapter = options.getString("adapter");
+        client = vertx.createHttpClient(new HttpClientOptions()
+                .setKeepAlive(true)
+                .setMaxPoolSize(options.getInteger("connections")));
+        startPromise.complete();
+        prepare(0, v -> run());
+    }
+
+    /**
+     * Creates every package once, with a few requests in parallel, and keeps the returned distributions.
+     */
+    private void prepare(int first, Handler<Void> next) {
+        int packages = options.getInteger("packages");
+        if (first >= packages) {
+            LOGGER.info("Created " + packages + " packages with " + distributions.size() + " distributions.");
+            next.handle(null);
+            return;
+        }
+        int last = Math.min(packages, first + PREPARE_CONCURRENCY);
+        int[] pending = {last - first};
+        for (int i = first; i < last; i++) {
+            post("/create", createRequest(i), response -> {
+                if (response != null) {
+                    JsonArray created = response.getJsonArray("distributions", new JsonArray());
+                    created.forEach(distribution -> distributions.add((JsonObject) distribution));
+                }
+                if (--pending[0] == 0) {
+                    prepare(last, next);
+                }
+            });
+        }
+    }
+
+    private void run() {
+        double rate = options.getDouble("rate");
+        double createRatio = distributions.isEmpty() ? 1.0 : options.getDouble("create-ratio");
+        int maxOutstanding = options.getInteger("max-outstanding");
+        long start = System.nanoTime();
+        long end = start + options.getLong("duration") * 1_000_000_000L;
+        double[] credit = {0};
+        LOGGER.info("Sending " + rate + " requests per second for " + options.getLong("duration") + " seconds.");
+        vertx.setPeriodic(TICK_MILLIS, timer -> {
+            if (System.nanoTime() >= end) {
+                vertx.cancelTimer(timer);
+                finish(start, end);
+                return;
+            }
+            credit[0] += rate * TICK_MILLIS / 1000.0;
+            while (credit[0] >= 1) {
+                credit[0]--;
+                if (outstanding >= maxOutstanding) {
+                    dropped++;
+                } else if (random.nextDouble() < createRatio) {
+                    create();
+                } else {
+                    getFile();
+                }
+            }
+        });
+    }
+
+    private void create() {
+        long start = System.nanoTime();
+        outstanding++;
+        JsonObject body = createRequest(random.nextInt(options.getInteger("packages")));
+        send("/create", body, (success, bytes) -> {
+            outstanding--;
+            creates.record(System.nanoTime() - start, success, bytes);
+        });
+    }
+
+    private void getFile() {
+        long start = System.nanoTime();
+        outstanding++;
+        JsonObject body = new JsonObject()
+                .put("dataAsset", distributions.get(random.nextInt(distributions.size())))
+                .put("fileType", options.getString("file-type"));
+        send("/getFile", body, (success, bytes) -> {
+            outstanding--;
+            files.record(System.nanoTime() - start, success, bytes);
+        });
+    }
+
+    private JsonObject createRequest(int packageNumber) {
+        return new JsonObject()
+                .put("dataSource", new JsonObject()
+                        .put("id", 1)
+                        .put("data", new JsonObject()
+                                .put("ckanApiUrl", "http://localhost:" + options.getInteger("ckan-port") + "/api/3/action")))
+                .put("data", new JsonObject().put("resourceId", Stubs.PACKAGE_PREFIX + packageNumber));
+    }
+
+    private void finish(long start, long end) {
+        long waitUntil = System.nanoTime() + options.getLong("drain-timeout") * 1_000_000_000L;
+        vertx.setPeriodic(100, timer -> {
+            if (outstanding > 0 && System.nanoTime() < waitUntil) {
+                return;
+            }
+            vertx.cancelTimer(timer);
+            double seconds = (end - start) / 1e9;
+            JsonObject result = new JsonObject()
+                    .put("durationSeconds", seconds)
+                    .put("unfinished", outstanding)
+                    .put("dropped", dropped)
+                    .put("results", new JsonArray()
+                            .add(creates.summary(seconds))
+                            .add(files.summary(seconds)));
+            vertx.eventBus().publish(RESULT_ADDRESS, result);
+        });
+    }
+
+    /**
+     * Posts the body and reads the whole response as JSON, null on failure.
+     */
+    private void post(String path, JsonObject body, Handler<JsonObject> responseHandler) {
+        HttpClientRequest request = client.requestAbs(HttpMethod.POST, adapter + path);
+        request.handler(response -> response.bodyHandler(buffer -> {
+            if (response.statusCode() == 200) {
+                responseHandler.handle(buffer.toJsonObject());
+            } else {
+                LOGGER.error(path + " failed with status " + response.statusCode());
+                responseHandler.handle(null);
+            }
+        }));
+        request.exceptionHandler(t -> {
+            LOGGER.error(path + " failed: " + t.getMessage());
+            responseHandler.handle(null);
+        });
+        request.end(body.toBuffer());
+    }
+
+    /**
+     * Posts the body and counts the bytes of the response without keeping them.
+     */
+    private void send(String path, JsonObject body, ResultHandler resultHandler) {
+        boolean[] done = {false};
+        HttpClientRequest request = client.requestAbs(HttpMethod.POST, adapter + path);
+        request.handler(response -> {
+            long[] bytes = {0};
+            response.handler(buffer -> bytes[0] += buffer.length());
+            response.endHandler(v -> {
+                if (!done[0]) {
+                    done[0] = true;
+                    resultHandler.handle(response.statusCode() < 400, bytes[0]);
+                }
+            });
+            response.exceptionHandler(t -> {
+                if (!done[0]) {
+                    done[0] = true;
+                    resultHandler.handle(false, bytes[0]);
+                }
+            });
+        });
+        request.exceptionHandler(t -> {
+            if (!done[0]) {
+                done[0] = true;
+                resultHandler.handle(false, 0);
+            }
+        });
+        request.end(body.toBuffer());
+    }
+
+    private interface ResultHandler {
+        void handle(boolean success, long bytes);
+    }
+}
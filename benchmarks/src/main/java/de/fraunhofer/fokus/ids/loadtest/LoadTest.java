@@ -0,0 +1,132 @@
+package de.fraunhofer.fokus.ids.loadtest;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load test of a running adapter against a mock CKAN and mock data hosts. Options are given as "--name value", e.g.
+ * <pre>
+ * java -cp benchmarks.jar de.fraunhofer.fokus.ids.loadtest.LoadTest --rate 50 --duration 120 --file-latency 200
+ * </pre>
+ * With "--mocks-only true" only the mock servers are started, e.g. for manual tests.
+ */
+public class LoadTest {
+
+    private static final JsonObject DEFAULTS = new JsonObject()
+            .put("adapter", "http://localhost:8080")
+            .put("rate", 20.0)
+            .put("duration", 60L)
+            .put("create-ratio", 0.2)
+            .put("file-type", "TXT")
+            .put("connections", 100)
+            .put("max-outstanding", 1000)
+            .put("drain-timeout", 30L)
+            .put("packages", 20)
+            .put("resources", 10)
+            .put("ckan-port", 8090)
+            .put("ckan-latency", 20L)
+            .put("file-port", 8091)
+            .put("file-hosts", 2)
+            .put("file-size", 1024L * 1024)
+            .put("file-latency", 50L)
+            .put("file-bandwidth", 0L)
+            .put("error-rate", 0.0)
+            .put("abort-rate", 0.0)
+            .put("mocks-only", false);
+
+    public static void main(String[] args) {
+        JsonObject options = parse(args);
+        Vertx vertx = Vertx.vertx();
+        List<Future> mocks = new ArrayList<>();
+        mocks.add(deploy(vertx, MockCkanVerticle.class.getName(), options));
+        for (int i = 0; i < options.getInteger("file-hosts"); i++) {
+            mocks.add(deploy(vertx, MockFileServerVerticle.class.getName(),
+                    options.copy().put("port", options.getInteger("file-port") + i)));
+        }
+        CompositeFuture.all(mocks).onComplete(started -> {
+            if (started.failed()) {
+                System.err.println("Mock servers could not be started: " + started.cause().getMessage());
+                vertx.close();
+                return;
+            }
+            if (options.getBoolean("mocks-only")) {
+                System.out.println("Mock CKAN API: http://localhost:" + options.getInteger("ckan-port") + "/api/3/action");
+                return;
+            }
+            vertx.eventBus().<JsonObject>consumer(LoadDriverVerticle.RESULT_ADDRESS, message -> {
+                print(message.body());
+                vertx.close();
+            });
+            deploy(vertx, LoadDriverVerticle.class.getName(), options).onFailure(t -> {
+                System.err.println("Load driver could not be started: " + t.getMessage());
+                vertx.close();
+            });
+        });
+    }
+
+    private static Future<String> deploy(Vertx vertx, String verticle, JsonObject config) {
+        Promise<String> promise = Promise.promise();
+        vertx.deployVerticle(verticle, new DeploymentOptions().setConfig(config), reply -> {
+            if (reply.succeeded()) {
+                promise.complete(reply.result());
+            } else {
+                promise.fail(reply.cause());
+            }
+        });
+        return promise.future();
+    }
+
+    /**
+     * Parses "--name value" pairs, values are converted to the type of the default.
+     */
+    static JsonObject parse(String[] args) {
+        JsonObject options = DEFAULTS.copy();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !DEFAULTS.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException("Unknown option " + args[i] + ", known options: " + DEFAULTS.fieldNames());
+            }
+            String name = args[i].substring(2);
+            String value = args[i + 1];
+            Object defaultValue = DEFAULTS.getValue(name);
+            if (defaultValue instanceof Integer) {
+                options.put(name, Integer.parseInt(value));
+            } else if (defaultValue instanceof Long) {
+                options.put(name, Long.parseLong(value));
+            } else if (defaultValue instanceof Double) {
+                options.put(name, Double.parseDouble(value));
+            } else if (defaultValue instanceof Boolean) {
+                options.put(name, Boolean.parseBoolean(value));
+            } else {
+                options.put(name, value);
+            }
+        }
+        return options;
+    }
+
+    private static void print(JsonObject result) {
+        System.out.println(String.format("%-8s %9s %7s %9s %9s %9s %9s %9s %9s",
+                "", "requests", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "req/s", "MB/s"));
+        result.getJsonArray("results").forEach(entry -> {
+            JsonObject summary = (JsonObject) entry;
+            System.out.println(String.format("%-8s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.2f",
+                    summary.getString("name"),
+                    summary.getInteger("requests"),
+                    summary.getLong("errors"),
+                    summary.getDouble("p50Millis"),
+                    summary.getDouble("p90Millis"),
+                    summary.getDouble("p99Millis"),
+                    summary.getDouble("maxMillis"),
+                    summary.getDouble("requestsPerSecond"),
+                    summary.getDouble("megabytesPerSecond")));
+        });
+        System.out.println("dropped " + result.getLong("dropped") + ", unfinished " + result.getInteger("unfinished"));
+        System.out.println(result.encodePrettily());
+    }
+}
@@ -0,0 +1,98 @@
+package de.fraunhofer.fokus.ids.loadtest;
+
+import de.fraunhofer.fokus.ids.benchmarks.Stubs;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mock CKAN action API answering package_show, resource_show and package_search for the packages "pkg-0" to
+ * "pkg-&lt;packages - 1&gt;". The resources of a package point to the mock file servers in turn.
+ */
+public class MockCkanVerticle extends AbstractVerticle {
+    private final Logger LOGGER = LoggerFactory.getLogger(MockCkanVerticle.class.getName());
+
+    private final Map<String, JsonObject> packages = new HashMap<>();
+    private final Map<String, String> packageOfResource = new HashMap<>();
+    private long latency;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        JsonObject options = config();
+        latency = options.getLong("ckan-latency");
+        int fileHosts = options.getInteger("file-hosts");
+        int filePort = options.getInteger("file-port");
+        for (int i = 0; i < options.getInteger("packages"); i++) {
+            String id = Stubs.PACKAGE_PREFIX + i;
+            JsonObject ckanPackage = Stubs.ckanPackage(id, options.getInteger("resources"), "");
+            JsonArray resources = ckanPackage.getJsonArray("resources");
+            for (int r = 0; r < resources.size(); r++) {
+                JsonObject resource = resources.getJsonObject(r);
+                resource.put("url", "http://localhost:" + (filePort + r % fileHosts) + resource.getString("url"));
+                packageOfResource.put(resource.getString("id"), id);
+            }
+            packages.put(id, ckanPackage);
+        }
+        int port = options.getInteger("ckan-port");
+        vertx.createHttpServer()
+                .requestHandler(request -> vertx.setTimer(Math.max(1, latency), t -> handle(request)))
+                .listen(port, reply -> {
+                    if (reply.succeeded()) {
+                        LOGGER.info("Mock CKAN listening on http://localhost:" + port + "/api/3/action");
+                        startPromise.complete();
+                    } else {
+                        startPromise.fail(reply.cause());
+                    }
+                });
+    }
+
+    private void handle(HttpServerRequest request) {
+        String path = request.path();
+        JsonObject result = null;
+        if (path.endsWith("/package_show")) {
+            result = packages.get(request.getParam("id"));
+        } else if (path.endsWith("/resource_show")) {
+            JsonObject ckanPackage = packages.get(packageOfResource.get(request.getParam("id")));
+            result = ckanPackage == null ? null : findResource(ckanPackage, request.getParam("id"));
+        } else if (path.endsWith("/package_search")) {
+            result = search(request);
+        }
+        if (result == null) {
+            request.response().setStatusCode(404).putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("success", false).encode());
+        } else {
+            request.response().putHeader("Content-Type", "application/json")
+                    .end(Buffer.buffer(new JsonObject().put("success", true).put("result", result).encode()));
+        }
+    }
+
+    private JsonObject findResource(JsonObject ckanPackage, String id) {
+        for (Object resource : ckanPackage.getJsonArray("resources")) {
+            if (id.equals(((JsonObject) resource).getString("id"))) {
+                return (JsonObject) resource;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pages over all packages, filter queries are ignored.
+     */
+    private JsonObject search(HttpServerRequest request) {
+        JsonArray results = new JsonArray();
+        int start = Integer.parseInt(request.params().contains("start") ? request.getParam("start") : "0");
+        int rows = Integer.parseInt(request.params().contains("rows") ? request.getParam("rows") : "10");
+        for (int i = start; i < Math.min(packages.size(), start + rows); i++) {
+            results.add(packages.get(Stubs.PACKAGE_PREFIX + i));
+        }
+        return new JsonObject().put("count", packages.size()).put("results", results);
+    }
+}
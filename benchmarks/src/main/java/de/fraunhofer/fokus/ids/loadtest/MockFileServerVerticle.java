@@ -0,0 +1,102 @@
+package de.fraunhofer.fokus.ids.loadtest;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.Random;
+
+/**
+ * Mock data host serving every path as a CSV file of a configurable size. The time to the response head, the
+ * bandwidth per response and the rates of error responses and connections aborted mid-body can be configured.
+ */
+public class MockFileServerVerticle extends AbstractVerticle {
+    private final Logger LOGGER = LoggerFactory.getLogger(MockFileServerVerticle.class.getName());
+
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int UNTHROTTLED_CHUNK_SIZE = 64 * 1024;
+
+    private final Random random = new Random();
+    private long fileSize;
+    private long latency;
+    private long bandwidth;
+    private double errorRate;
+    private double abortRate;
+    private Buffer chunk;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        JsonObject options = config();
+        fileSize = options.getLong("file-size");
+        latency = options.getLong("file-latency");
+        bandwidth = options.getLong("file-bandwidth");
+        errorRate = options.getDouble("error-rate");
+        abortRate = options.getDouble("abort-rate");
+        int chunkSize = bandwidth > 0 ? (int) Math.max(1, bandwidth / TICKS_PER_SECOND) : UNTHROTTLED_CHUNK_SIZE;
+        StringBuilder row = new StringBuilder();
+        while (row.length() < chunkSize) {
+            row.append("42,Station,2020-06-01T12:00:00,0.25\n");
+        }
+        chunk = Buffer.buffer(row.substring(0, chunkSize));
+        int port = options.getInteger("port");
+        vertx.createHttpServer()
+                .requestHandler(request -> vertx.setTimer(Math.max(1, latency), t -> handle(request)))
+                .listen(port, reply -> {
+                    if (reply.succeeded()) {
+                        LOGGER.info("Mock file server listening on http://localhost:" + port);
+                        startPromise.complete();
+                    } else {
+                        startPromise.fail(reply.cause());
+                    }
+                });
+    }
+
+    private void handle(HttpServerRequest request) {
+        HttpServerResponse response = request.response();
+        if (random.nextDouble() < errorRate) {
+            response.setStatusCode(503).end();
+            return;
+        }
+        String path = request.path();
+        response.putHeader("Content-Type", "text/csv")
+                .putHeader("Content-Length", String.valueOf(fileSize))
+                .putHeader("Content-Disposition", "attachment; filename=\"" + path.substring(path.lastIndexOf('/') + 1) + "\"")
+                .putHeader("ETag", "\"" + fileSize + "\"");
+        if (request.method() == HttpMethod.HEAD) {
+            response.end();
+            return;
+        }
+        long abortAt = random.nextDouble() < abortRate ? fileSize / 2 : -1;
+        send(response, fileSize, abortAt);
+    }
+
+    private void send(HttpServerResponse response, long remaining, long abortAt) {
+        if (response.closed()) {
+            return;
+        }
+        if (remaining == 0) {
+            response.end();
+            return;
+        }
+        if (abortAt >= 0 && fileSize - remaining >= abortAt) {
+            response.close();
+            return;
+        }
+        int size = (int) Math.min(remaining, chunk.length());
+        response.write(size == chunk.length() ? chunk : chunk.slice(0, size));
+        long next = remaining - size;
+        if (bandwidth > 0) {
+            vertx.setTimer(1000 / TICKS_PER_SECOND, t -> send(response, next, abortAt));
+        } else if (response.writeQueueFull()) {
+            response.drainHandler(v -> send(response, next, abortAt));
+        } else {
+            vertx.runOnContext(v -> send(response, next, abortAt));
+        }
+    }
+}
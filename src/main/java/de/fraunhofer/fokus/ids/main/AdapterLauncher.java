@@ -0,0 +1,27 @@
+package de.fraunhofer.fokus.ids.main;
+
+import io.vertx.core.Launcher;
+import io.vertx.core.VertxOptions;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
+
+/**
+ * Vert.x launcher enabling the Micrometer metrics with a Prometheus registry, which are served on /metrics.
+ * Metrics are disabled by setting the environment variable METRICS_ENABLED to false.
+ */
+public class AdapterLauncher extends Launcher {
+
+    public static void main(String[] args) {
+        new AdapterLauncher().dispatch(args);
+    }
+
+    @Override
+    public void beforeStartingVertx(VertxOptions options) {
+        if (!"false".equalsIgnoreCase(System.getenv("METRICS_ENABLED"))) {
+            options.setMetricsOptions(new MicrometerMetricsOptions()
+                    .setPrometheusOptions(new VertxPrometheusOptions().setEnabled(true))
+                    .setJvmMetricsEnabled(true)
+                    .setEnabled(true));
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package de.fraunhofer.fokus.ids.main;
+
+import de.fraunhofer.fokus.ids.enums.FileType;
+import de.fraunhofer.fokus.ids.messages.DataAssetCreateMessage;
+import de.fraunhofer.fokus.ids.messages.ResourceRequest;
+import de.fraunhofer.fokus.ids.services.AdapterMetrics;
+import de.fraunhofer.fokus.ids.services.CircuitOpenException;
+import de.fraunhofer.fokus.ids.services.DataAssetService;
+import de.fraunhofer.fokus.ids.services.Deadline;
+import de.fraunhofer.fokus.ids.services.FileService;
+import de.fraunhofer.fokus.ids.services.HostGuards;
+import de.fraunhofer.fokus.ids.services.HttpClients;
+import de.fraunhofer.fokus.ids.services.cache.AccessInformationCache;
+import de.fraunhofer.fokus.ids.services.cache.FileCache;
+import de.fraunhofer.fokus.ids.services.ckan.CKANService;
+import de.fraunhofer.fokus.ids.services.TransferStatistics;
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.*;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+import io.vertx.ext.web.handler.CorsHandler;
+import io.vertx.micrometer.PrometheusScrapingHandler;
+import org.apache.http.entity.ContentType;
+
+import java.util.*;
+/**
+ * HTTP API of the adapter. Deployed once per event loop by the {@link MainVerticle}, all instances share port 8080.
+ */
+public class ApiVerticle extends AbstractVerticle {
+    private static Logger LOGGER = LoggerFactory.getLogger(ApiVerticle.class.getName());
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final long DEFAULT_REQUEST_TIMEOUT = 30000;
+    private static final long DEFAULT_MAX_BATCH_TIMEOUT = 3600000;
+    private Router router;
+    private DataAssetService dataAssetService;
+    private FileService fileService;
+    private AccessInformationCache accessInformationCache;
+    private CKANService ckanService;
+    private HttpClients httpClients;
+    private FileCache fileCache;
+    private TransferStatistics transferStatistics;
+    private HostGuards fileHostGuards;
+    private long requestTimeout;
+    private long maxBatchTimeout;
+    @Override
+    public void start(Future<Void> startFuture) {
+        ConfigStoreOptions confStore = new ConfigStoreOptions()
+                .setType("env");
+        ConfigRetrieverOptions options = new ConfigRetrieverOptions().addStore(confStore);
+        ConfigRetriever retriever = ConfigRetriever.create(vertx, options);
+
+        retriever.getConfig(ar -> {
+            if (ar.succeeded()) {
+                init(ar.result(), startFuture);
+            } else {
+                LOGGER.error("Config could not be retrieved.", ar.cause());
+                startFuture.fail(ar.cause());
+            }
+        });
+    }
+
+    private void init(JsonObject config, Future<Void> startFuture) {
+        this.router = Router.router(vertx);
+        this.dataAssetService = new DataAssetService(vertx, config);
+        this.fileService = new FileService(vertx, config);
+        this.accessInformationCache = AccessInformationCache.get(vertx, config);
+        this.ckanService = CKANService.get(vertx, config);
+        this.httpClients = HttpClients.get(vertx, config);
+        this.fileCache = FileCache.get(vertx, config);
+        this.transferStatistics = TransferStatistics.get(vertx);
+        this.fileHostGuards = HostGuards.get(vertx, HostGuards.FILE, config);
+        this.requestTimeout = config.getLong("REQUEST_TIMEOUT", DEFAULT_REQUEST_TIMEOUT);
+        this.maxBatchTimeout = config.getLong("MAX_BATCH_TIMEOUT", DEFAULT_MAX_BATCH_TIMEOUT);
+
+        createHttpServer(config, startFuture);
+    }
+
+    private void createHttpServer(JsonObject config, Future<Void> startFuture) {
+        HttpServerOptions serverOptions = new HttpServerOptions()
+                .setCompressionSupported(config.getBoolean("HTTP_COMPRESSION", true))
+                .setCompressionLevel(config.getInteger("HTTP_COMPRESSION_LEVEL", DEFAULT_COMPRESSION_LEVEL));
+        HttpServer server = vertx.createHttpServer(serverOptions);
+
+        Set<String> allowedHeaders = new HashSet<>();
+        allowedHeaders.add("x-requested-with");
+        allowedHeaders.add("Access-Control-Allow-Origin");
+        allowedHeaders.add("origin");
+        allowedHeaders.add("Content-Type");
+        allowedHeaders.add("accept");
+        allowedHeaders.add("X-PINGARUNER");
+        allowedHeaders.add(Deadline.HEADER);
+
+        Set<HttpMethod> allowedMethods = new HashSet<>();
+        allowedMethods.add(HttpMethod.GET);
+        allowedMethods.add(HttpMethod.POST);
+
+        router.route().handler(CorsHandler.create("*").allowedHeaders(allowedHeaders).allowedMethods(allowedMethods));
+        router.route().handler(BodyHandler.create());
+
+        router.post("/create").handler(this::create);
+
+        router.post("/createBatch").handler(this::createBatch);
+
+        router.post("/harvest").handler(this::harvest);
+
+        router.get("/delete/:id").handler(routingContext ->
+                dataAssetService.deleteDataAsset(routingContext.request().getParam("id"), reply ->
+                        reply(reply, routingContext.response())));
+
+        router.post("/getFile").handler(routingContext ->
+                fileService.getFile(Json.decodeValue(routingContext.getBody(), ResourceRequest.class), routingContext.request(),
+                        Deadline.of(routingContext.request(), requestTimeout, requestTimeout)));
+
+        router.route("/supported")
+                .handler(routingContext ->
+                        supported(result -> reply(result, routingContext.response()))
+                );
+
+        router.route("/getDataAssetFormSchema")
+                .handler(routingContext ->
+                        getDataAssetFormSchema(result -> reply(result, routingContext.response()))
+                );
+
+        router.route("/getDataSourceFormSchema")
+                .handler(routingContext ->
+                        getDataSourceFormSchema(result -> reply(result, routingContext.response()))
+                );
+
+        router.get("/statistics")
+                .handler(routingContext ->
+                        statistics(result -> reply(result, routingContext.response()))
+                );
+
+        if (AdapterMetrics.isEnabled()) {
+            router.get("/metrics").handler(PrometheusScrapingHandler.create());
+        }
+
+        server.requestHandler(router).listen(8080, reply -> {
+            if (reply.succeeded()) {
+                startFuture.complete();
+            } else {
+                LOGGER.error("HTTP server could not be started.", reply.cause());
+                startFuture.fail(reply.cause());
+            }
+        });
+    }
+
+    private void create(RoutingContext routingContext) {
+        DataAssetCreateMessage message = Json.decodeValue(routingContext.getBody(), DataAssetCreateMessage.class);
+        Deadline deadline = Deadline.of(routingContext.request(), requestTimeout, requestTimeout);
+        dataAssetService.createDataAsset(message, deadline, reply -> {
+            if (reply.failed() && (Deadline.isTimeout(reply.cause()) || deadline.isExpired())) {
+                routingContext.response().setStatusCode(504).end();
+            } else if (reply.failed() && CircuitOpenException.isCircuitOpen(reply.cause())) {
+                routingContext.response().setStatusCode(503).end();
+            } else {
+                reply(reply, routingContext.response());
+            }
+        });
+    }
+
+    /**
+     * Batches and harvests are only limited by a deadline if the request carries the X-Request-Timeout header, which
+     * is bounded by MAX_BATCH_TIMEOUT. They pause while the write queue of the response is full.
+     */
+    private void createBatch(RoutingContext routingContext) {
+        DataAssetCreateMessage message = Json.decodeValue(routingContext.getBody(), DataAssetCreateMessage.class);
+        HttpServerResponse response = startNdjson(routingContext.response());
+        dataAssetService.createDataAssets(message, Deadline.of(routingContext.request(), 0, maxBatchTimeout), response,
+                item -> writeNdjson(response, item),
+                reply -> endNdjson(response));
+    }
+
+    private void harvest(RoutingContext routingContext) {
+        DataAssetCreateMessage message = Json.decodeValue(routingContext.getBody(), DataAssetCreateMessage.class);
+        HttpServerResponse response = startNdjson(routingContext.response());
+        dataAssetService.harvest(message.getDataSource(), message.getData(), Deadline.of(routingContext.request(), 0, maxBatchTimeout), response,
+                item -> writeNdjson(response, item),
+                reply -> {
+                    if (reply.failed()) {
+                        writeNdjson(response, new JsonObject()
+                                .put("status", "error")
+                                .put("message", String.valueOf(reply.cause().getMessage())));
+                    }
+                    endNdjson(response);
+                });
+    }
+
+    private HttpServerResponse startNdjson(HttpServerResponse response) {
+        response.setChunked(true);
+        response.putHeader("content-type", "application/x-ndjson");
+        return response;
+    }
+
+    private void writeNdjson(HttpServerResponse response, JsonObject item) {
+        if (!response.closed()) {
+            response.write(item.encode() + "\n");
+        }
+    }
+
+    private void endNdjson(HttpServerResponse response) {
+        if (!response.closed()) {
+            response.end();
+        }
+    }
+
+    private void supported(Handler<AsyncResult<String>> next) {
+        LOGGER.info("Returning supported data formats.");
+        JsonArray types = new JsonArray();
+        types.add(FileType.JSON);
+        types.add(FileType.XML);
+        types.add(FileType.TXT);
+
+        JsonObject jO = new JsonObject();
+        jO.put("supported", types);
+
+        next.handle(Future.succeededFuture(jO.toString()));
+    }
+
+    private void statistics(Handler<AsyncResult<String>> next) {
+        JsonObject jO = new JsonObject();
+        jO.put("accessInformationCache", accessInformationCache.statistics());
+        jO.put("httpClients", httpClients.statistics());
+        jO.put("fileCache", fileCache.statistics());
+        jO.put("transfers", transferStatistics.statistics());
+        jO.put("fileHosts", fileHostGuards.statistics());
+        ckanService.statistics(reply -> {
+            if (reply.succeeded()) {
+                jO.put("ckanCache", reply.result());
+            } else {
+                LOGGER.error("CKAN statistics could not be retrieved.", reply.cause());
+            }
+            next.handle(Future.succeededFuture(jO.toString()));
+        });
+    }
+
+    private void getDataAssetFormSchema(Handler<AsyncResult<String>> next) {
+        LOGGER.info("Returning form schema for data asset.");
+        JsonObject jO = new JsonObject();
+        jO.put("type","object");
+        jO.put("properties", new JsonObject()
+                .put("resourceId", new JsonObject()
+                        .put("type", "string")
+                        .put("ui", new JsonObject()
+                                .put("label", "Resource ID")
+                                .put("placeholder", "27b4920f-e85a-436e-a1a8-e000649abb28"))));
+        next.handle(Future.succeededFuture(jO.toString()));
+    }
+
+    private void getDataSourceFormSchema(Handler<AsyncResult<String>> next) {
+        LOGGER.info("Returning form schema for data source.");
+
+        JsonObject jO = new JsonObject();
+        jO.put("type","object");
+        jO.put("properties", new JsonObject()
+                .put("ckanApiUrl", new JsonObject()
+                        .put("type", "string")
+                        .put("ui", new JsonObject()
+                                .put("label", "CKAN API URL")
+                                .put("placeholder", "https://localhost:443/api/3/action"))));
+
+        next.handle(Future.succeededFuture(jO.toString()));
+    }
+
+    private void reply(AsyncResult result, HttpServerResponse response) {
+        if (result.succeeded()) {
+            if (result.result() != null) {
+                String entity = result.result().toString();
+                response.putHeader("content-type", ContentType.APPLICATION_JSON.toString());
+                response.end(entity);
+            } else {
+                response.setStatusCode(404).end();
+            }
+        } else {
+            response.setStatusCode(404).end();
+        }
+    }
+}
\ No newline at end of file
@@ -1,45 +1,54 @@
 package de.fraunhofer.fokus.ids.main;
 
-import de.fraunhofer.fokus.ids.enums.FileType;
-import de.fraunhofer.fokus.ids.messages.DataAssetCreateMessage;
-import de.fraunhofer.fokus.ids.messages.ResourceRequest;
-import de.fraunhofer.fokus.ids.services.DataAssetService;
-import de.fraunhofer.fokus.ids.services.FileService;
+import de.fraunhofer.fokus.ids.services.InitService;
 import de.fraunhofer.fokus.ids.services.ckan.CKANServiceVerticle;
 import de.fraunhofer.fokus.ids.services.database.DatabaseServiceVerticle;
-import de.fraunhofer.fokus.ids.services.InitService;
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.*;
-import io.vertx.core.http.HttpMethod;
-import io.vertx.core.http.HttpServer;
-import io.vertx.core.http.HttpServerResponse;
-import io.vertx.core.json.Json;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import io.vertx.ext.web.Router;
-import io.vertx.ext.web.handler.BodyHandler;
-import io.vertx.ext.web.handler.CorsHandler;
-import org.apache.http.entity.ContentType;
 
-import java.util.*;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
 public class MainVerticle extends AbstractVerticle {
     private static Logger LOGGER = LoggerFactory.getLogger(MainVerticle.class.getName());
-    private Router router;
-    private DataAssetService dataAssetService;
-    private FileService fileService;
+
     @Override
     public void start(Future<Void> startFuture) {
-        this.router = Router.router(vertx);
-        this.dataAssetService = new DataAssetService(vertx);
-        this.fileService = new FileService(vertx);
-        DeploymentOptions deploymentOptions = new DeploymentOptions();
-        deploymentOptions.setWorker(true);
+        ConfigStoreOptions confStore = new ConfigStoreOptions()
+                .setType("env");
+        ConfigRetrieverOptions options = new ConfigRetrieverOptions().addStore(confStore);
+        ConfigRetriever retriever = ConfigRetriever.create(vertx, options);
+
+        retriever.getConfig(ar -> {
+            if (ar.succeeded()) {
+                deploy(ar.result(), startFuture);
+            } else {
+                LOGGER.error("Config could not be retrieved.", ar.cause());
+                startFuture.fail(ar.cause());
+            }
+        });
+    }
 
-        vertx.deployVerticle(DatabaseServiceVerticle.class.getName(), deploymentOptions, reply -> {
+    /**
+     * Deploys the database service as worker and the non-blocking CKAN service on the event loops, runs the
+     * initialization once, then deploys the HTTP API once per event loop. The instances share port 8080 as well as
+     * the caches and statistics held in local maps.
+     */
+    private void deploy(JsonObject config, Future<Void> startFuture) {
+        DeploymentOptions databaseOptions = new DeploymentOptions()
+                .setWorker(true)
+                .setInstances(config.getInteger("DATABASE_SERVICE_INSTANCES", 1));
+        DeploymentOptions ckanOptions = new DeploymentOptions()
+                .setInstances(config.getInteger("CKAN_SERVICE_INSTANCES", Runtime.getRuntime().availableProcessors()));
+        DeploymentOptions apiOptions = new DeploymentOptions()
+                .setInstances(config.getInteger("HTTP_INSTANCES", Runtime.getRuntime().availableProcessors()));
+
+        vertx.deployVerticle(DatabaseServiceVerticle.class.getName(), databaseOptions, reply -> {
                 if(reply.succeeded()){
                     LOGGER.info("DataBaseService started");
                     new InitService(vertx, reply2 -> {
@@ -56,113 +65,17 @@ public class MainVerticle extends AbstractVerticle {
                     LOGGER.error("DataBaseService failed", reply.cause());
                 }
         });
-        vertx.deployVerticle(CKANServiceVerticle.class.getName(), deploymentOptions, reply -> LOGGER.info("CKANService started"));
-
-        createHttpServer();
-    }
-
-    private void createHttpServer() {
-        HttpServer server = vertx.createHttpServer();
-
-        Set<String> allowedHeaders = new HashSet<>();
-        allowedHeaders.add("x-requested-with");
-        allowedHeaders.add("Access-Control-Allow-Origin");
-        allowedHeaders.add("origin");
-        allowedHeaders.add("Content-Type");
-        allowedHeaders.add("accept");
-        allowedHeaders.add("X-PINGARUNER");
-
-        Set<HttpMethod> allowedMethods = new HashSet<>();
-        allowedMethods.add(HttpMethod.GET);
-        allowedMethods.add(HttpMethod.POST);
-
-        router.route().handler(CorsHandler.create("*").allowedHeaders(allowedHeaders).allowedMethods(allowedMethods));
-        router.route().handler(BodyHandler.create());
-
-        router.post("/create").handler(routingContext ->
-                dataAssetService.createDataAsset(Json.decodeValue(routingContext.getBodyAsJson().toString(), DataAssetCreateMessage.class), reply ->
-                        reply(reply, routingContext.response())));
-
-        router.get("/delete/:id").handler(routingContext ->
-                dataAssetService.deleteDataAsset(routingContext.request().getParam("id"), reply ->
-                        reply(reply, routingContext.response())));
-
-        router.post("/getFile").handler(routingContext ->
-                fileService.getFile(Json.decodeValue(routingContext.getBodyAsString(), ResourceRequest.class),  routingContext.response()));
-
-        router.route("/supported")
-                .handler(routingContext ->
-                        supported(result -> reply(result, routingContext.response()))
-                );
-
-        router.route("/getDataAssetFormSchema")
-                .handler(routingContext ->
-                        getDataAssetFormSchema(result -> reply(result, routingContext.response()))
-                );
-
-        router.route("/getDataSourceFormSchema")
-                .handler(routingContext ->
-                        getDataSourceFormSchema(result -> reply(result, routingContext.response()))
-                );
-
+        vertx.deployVerticle(CKANServiceVerticle.class.getName(), ckanOptions, reply -> LOGGER.info("CKANService started"));
 
         LOGGER.info("Starting CKAN adapter...");
-        server.requestHandler(router).listen(8080);
-        LOGGER.info("CKAN adapter successfully started.");
-    }
-
-    private void supported(Handler<AsyncResult<String>> next) {
-        LOGGER.info("Returning supported data formats.");
-        JsonArray types = new JsonArray();
-        types.add(FileType.JSON);
-        types.add(FileType.XML);
-        types.add(FileType.TXT);
-
-        JsonObject jO = new JsonObject();
-        jO.put("supported", types);
-
-        next.handle(Future.succeededFuture(jO.toString()));
-    }
-
-    private void getDataAssetFormSchema(Handler<AsyncResult<String>> next) {
-        LOGGER.info("Returning form schema for data asset.");
-        JsonObject jO = new JsonObject();
-        jO.put("type","object");
-        jO.put("properties", new JsonObject()
-                .put("resourceId", new JsonObject()
-                        .put("type", "string")
-                        .put("ui", new JsonObject()
-                                .put("label", "Resource ID")
-                                .put("placeholder", "27b4920f-e85a-436e-a1a8-e000649abb28"))));
-        next.handle(Future.succeededFuture(jO.toString()));
-    }
-
-    private void getDataSourceFormSchema(Handler<AsyncResult<String>> next) {
-        LOGGER.info("Returning form schema for data source.");
-
-        JsonObject jO = new JsonObject();
-        jO.put("type","object");
-        jO.put("properties", new JsonObject()
-                .put("ckanApiUrl", new JsonObject()
-                        .put("type", "string")
-                        .put("ui", new JsonObject()
-                                .put("label", "CKAN API URL")
-                                .put("placeholder", "https://localhost:443/api/3/action"))));
-
-        next.handle(Future.succeededFuture(jO.toString()));
-    }
-
-    private void reply(AsyncResult result, HttpServerResponse response) {
-        if (result.succeeded()) {
-            if (result.result() != null) {
-                String entity = result.result().toString();
-                response.putHeader("content-type", ContentType.APPLICATION_JSON.toString());
-                response.end(entity);
+        vertx.deployVerticle(ApiVerticle.class.getName(), apiOptions, reply -> {
+            if (reply.succeeded()) {
+                LOGGER.info("CKAN adapter successfully started with " + apiOptions.getInstances() + " HTTP instances.");
+                startFuture.complete();
             } else {
-                response.setStatusCode(404).end();
+                LOGGER.error("CKAN adapter could not be started.", reply.cause());
+                startFuture.fail(reply.cause());
             }
-        } else {
-            response.setStatusCode(404).end();
-        }
+        });
     }
-}
\ No newline at end of file
+}
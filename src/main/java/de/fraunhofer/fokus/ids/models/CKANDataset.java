@@ -29,4 +29,6 @@ public class CKANDataset {
 
     public String version;
 
+    public String metadata_modified;
+
 }
@@ -1,8 +1,11 @@
 package de.fraunhofer.fokus.ids.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.io.Serializable;
 import java.util.List;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class CKANDatasetSearch implements Serializable {
 
     public String success;
@@ -10,43 +13,14 @@ public class CKANDatasetSearch implements Serializable {
     public Result result;
 
 
+    @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Result {
 
         public Integer count;
 
         public String sort;
 
-        public List<Dataset> results;
-
-    }
-
-    public static class Dataset {
-
-        public String id;
-
-        public String title;
-
-        public String name;
-
-        public String notes;
-
-        public String license_url;
-
-        public String license_title;
-
-        public List<Distribution> resources;
-
-    }
-
-    public static class Distribution {
-
-        public String name;
-
-        public String url;
-
-        public String id;
-
-        public String format;
+        public List<CKANDataset> results;
 
     }
 
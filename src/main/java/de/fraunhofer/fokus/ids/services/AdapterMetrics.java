@@ -0,0 +1,133 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Timers and counters of the adapter's hot paths, published together with the Vert.x metrics on /metrics.
+ * If metrics are disabled all meters are registered in an empty registry and nothing is recorded.
+ */
+public class AdapterMetrics {
+
+    public static final String CKAN_REQUESTS = "ckan.requests";
+    public static final String FILE_PROBES = "file.probes";
+    public static final String FILE_PROBE_QUEUE = "file.probe.queue";
+    public static final String DATABASE_OPERATIONS = "database.operations";
+    public static final String DATABASE_POOL_WAIT = "database.pool.wait";
+    public static final String FILE_TRANSFERS = "file.transfers";
+    public static final String FILE_TRANSFER_BYTES = "file.transfer.bytes";
+    public static final String EVENT_BUS_ROUND_TRIPS = "eventbus.roundtrips";
+    public static final String HOST_CONCURRENCY_LIMIT = "host.concurrency.limit";
+    public static final String HOST_CONCURRENCY_ACTIVE = "host.concurrency.active";
+    public static final String HOST_CONCURRENCY_WAITING = "host.concurrency.waiting";
+    public static final String CIRCUIT_BREAKER_STATE = "circuit.breaker.state";
+    public static final String CIRCUIT_BREAKER_REJECTIONS = "circuit.breaker.rejections";
+
+    private static final MeterRegistry NOOP_REGISTRY = new CompositeMeterRegistry();
+
+    private AdapterMetrics() {
+    }
+
+    /**
+     * @return the registry of the Vert.x metrics, or an empty registry if metrics are disabled
+     */
+    public static MeterRegistry registry() {
+        MeterRegistry registry = BackendRegistries.getDefaultNow();
+        return registry != null ? registry : NOOP_REGISTRY;
+    }
+
+    /**
+     * @return true if metrics are enabled and /metrics can be served
+     */
+    public static boolean isEnabled() {
+        return BackendRegistries.getDefaultNow() != null;
+    }
+
+    /**
+     * Wraps a result handler, so the time until it is called is recorded with the outcome of the result.
+     * @param name timer name
+     * @param tags additional tags as key value pairs
+     */
+    public static <T> Handler<AsyncResult<T>> timed(String name, Handler<AsyncResult<T>> handler, String... tags) {
+        long start = System.nanoTime();
+        return result -> {
+            record(name, start, result.succeeded(), tags);
+            handler.handle(result);
+        };
+    }
+
+    /**
+     * Records the time since start with the given outcome.
+     * @param start start time as given by System.nanoTime()
+     * @param tags additional tags as key value pairs
+     */
+    public static void record(String name, long start, boolean success, String... tags) {
+        Timer.builder(name)
+                .tags(tags)
+                .tag("outcome", success ? "success" : "failure")
+                .register(registry())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time since start without outcome, e.g. the time spent waiting for a connection.
+     * @param start start time as given by System.nanoTime()
+     * @param tags additional tags as key value pairs
+     */
+    public static void recordWait(String name, long start, String... tags) {
+        Timer.builder(name)
+                .tags(tags)
+                .register(registry())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers a gauge reading its value from the given object. The registry only keeps a weak reference to it.
+     * @param tags additional tags as key value pairs
+     */
+    public static <T> Meter gauge(String name, T obj, ToDoubleFunction<T> value, String... tags) {
+        return Gauge.builder(name, obj, value)
+                .tags(tags)
+                .register(registry());
+    }
+
+    /**
+     * @param tags additional tags as key value pairs
+     */
+    public static Counter counter(String name, String... tags) {
+        return Counter.builder(name)
+                .tags(tags)
+                .register(registry());
+    }
+
+    /**
+     * Removes a meter that is no longer updated, e.g. of an evicted host.
+     */
+    public static void remove(Meter meter) {
+        registry().remove(meter);
+    }
+
+    public static void recordTransfer(StreamTransfer transfer) {
+        String outcome = transfer.isFailed() ? "failure" : "success";
+        Timer.builder(FILE_TRANSFERS)
+                .tag("outcome", outcome)
+                .register(registry())
+                .record(transfer.getDurationMillis(), TimeUnit.MILLISECONDS);
+        DistributionSummary.builder(FILE_TRANSFER_BYTES)
+                .baseUnit("bytes")
+                .tag("outcome", outcome)
+                .register(registry())
+                .record(transfer.getBytes());
+    }
+}
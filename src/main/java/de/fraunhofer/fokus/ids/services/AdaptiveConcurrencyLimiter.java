@@ -0,0 +1,38 @@
+package de.fraunhofer.fokus.ids.services;
+
+/**
+ * Concurrency limiter whose limit follows the outcome of the tasks (AIMD). A successful task raises the limit by
+ * 1/limit, i.e. by one per round of tasks, as long as at least half of the limit is in use. A failed task lowers it
+ * by 10 percent. The limit stays between 1 and the maximum limit.
+ */
+public class AdaptiveConcurrencyLimiter extends ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int maxLimit;
+    private double estimatedLimit;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+        super(Math.min(initialLimit, maxLimit));
+        this.maxLimit = Math.max(1, maxLimit);
+        this.estimatedLimit = getLimit();
+    }
+
+    /**
+     * Adapts the limit to the outcome of a task and releases its slot.
+     * @param success false if the task failed in a way that indicates an overloaded upstream, e.g. a timeout
+     */
+    public void release(boolean success) {
+        int limit;
+        synchronized (this) {
+            if (!success) {
+                estimatedLimit = Math.max(1, estimatedLimit * BACKOFF_RATIO);
+            } else if (getActive() * 2 >= getLimit()) {
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + 1 / estimatedLimit);
+            }
+            limit = (int) estimatedLimit;
+        }
+        setLimit(limit);
+        release();
+    }
+}
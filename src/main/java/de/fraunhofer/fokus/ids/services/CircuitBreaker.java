@@ -0,0 +1,95 @@
+package de.fraunhofer.fokus.ids.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker of the calls to one upstream. After a number of consecutive failures the circuit opens and calls
+ * are rejected. Once the reset timeout has passed the circuit is half open and a single probe call is let through,
+ * its outcome closes the circuit again or keeps it open for another reset timeout.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final int failureThreshold;
+    private final long resetTimeoutNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * @param failureThreshold number of consecutive failures opening the circuit
+     * @param resetTimeoutMillis time in ms the circuit stays open before a probe call is let through
+     */
+    public CircuitBreaker(int failureThreshold, long resetTimeoutMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.resetTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(resetTimeoutMillis);
+    }
+
+    /**
+     * @return true if a call may be made, in which case its outcome has to be reported with {@link #success()} or
+     * {@link #failure()}
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < resetTimeoutNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    public synchronized void success() {
+        if (state == State.OPEN) {
+            return;
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    public synchronized void failure() {
+        if (state == State.OPEN) {
+            return;
+        }
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            probing = false;
+        }
+    }
+
+    /**
+     * Reports that an admitted call was not made. A pending probe of the half open circuit may be repeated.
+     */
+    public synchronized void cancel() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+}
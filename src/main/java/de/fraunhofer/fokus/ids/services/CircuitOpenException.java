@@ -0,0 +1,24 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.serviceproxy.ServiceException;
+
+/**
+ * Failure of a call that was not made because the circuit breaker of its host is open. It is a
+ * {@link ServiceException} with a dedicated failure code, so it stays recognizable after crossing the event bus.
+ */
+public class CircuitOpenException extends ServiceException {
+
+    public static final int FAILURE_CODE = 503;
+
+    public CircuitOpenException(String host) {
+        super(FAILURE_CODE, "Circuit breaker for " + host + " is open.");
+    }
+
+    /**
+     * @return true if the failure is a rejection by an open circuit breaker, locally or received from a service proxy
+     */
+    public static boolean isCircuitOpen(Throwable t) {
+        return t instanceof ReplyException && ((ReplyException) t).failureCode() == FAILURE_CODE;
+    }
+}
@@ -0,0 +1,83 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Limits the number of concurrently running asynchronous tasks. Tasks exceeding the limit are queued
+ * and started in FIFO order as soon as a running task calls {@link #release()}. A limiter may be shared by several
+ * verticles, queued tasks are started on the context they were queued on, not on the thread releasing the slot.
+ */
+public class ConcurrencyLimiter implements Shareable {
+
+    private int limit;
+    private final Deque<Handler<Void>> waiting = new ArrayDeque<>();
+    private int active;
+
+    public ConcurrencyLimiter(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Runs the task as soon as a slot is free. The task must call {@link #release()} exactly once when it is done.
+     * @param task task to run
+     */
+    public void acquire(Handler<Void> task) {
+        synchronized (this) {
+            if (active >= limit) {
+                Context context = Vertx.currentContext();
+                waiting.add(context == null ? task : v -> context.runOnContext(task));
+                return;
+            }
+            active++;
+        }
+        task.handle(null);
+    }
+
+    public void release() {
+        Handler<Void> next;
+        synchronized (this) {
+            next = active > limit ? null : waiting.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        next.handle(null);
+    }
+
+    /**
+     * Changes the limit. If it is raised, waiting tasks are started, if it is lowered, running tasks are completed
+     * before further tasks start.
+     */
+    protected void setLimit(int limit) {
+        List<Handler<Void>> started = new ArrayList<>();
+        synchronized (this) {
+            this.limit = Math.max(1, limit);
+            while (active < this.limit && !waiting.isEmpty()) {
+                active++;
+                started.add(waiting.poll());
+            }
+        }
+        started.forEach(task -> task.handle(null));
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getActive() {
+        return active;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+}
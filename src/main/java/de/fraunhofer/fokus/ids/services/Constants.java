@@ -9,4 +9,13 @@ public class Constants {
     public static final String DATABASE_SERVICE = ROUTE_PREFIX+"databaseService";
     public static final String CKAN_SERVICE = ROUTE_PREFIX+"ckanService";
 
+    public static final String CKAN_CACHE = ROUTE_PREFIX+"ckanCache";
+    public static final String ACCESS_INFORMATION_CACHE = ROUTE_PREFIX+"accessInformationCache";
+    public static final String FILE_CACHE = ROUTE_PREFIX+"fileCache";
+    public static final String TRANSFER_STATISTICS = ROUTE_PREFIX+"transferStatistics";
+    public static final String HOST_GUARDS = ROUTE_PREFIX+"hostGuards";
+    public static final String BATCH_LIMITERS = ROUTE_PREFIX+"batchLimiters";
+
+    public static final long DEFAULT_SERVICE_TIMEOUT = 30000;
+
 }
@@ -0,0 +1,67 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.models.CKANDataset;
+import de.fraunhofer.fokus.ids.models.CKANResource;
+import de.fraunhofer.fokus.ids.persistence.entities.Dataset;
+import de.fraunhofer.fokus.ids.persistence.entities.Distribution;
+import de.fraunhofer.fokus.ids.persistence.enums.DataAssetStatus;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Maps CKAN packages and resources to the Dataset and Distribution entities of the connector.
+ */
+public class DataAssetMapper {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(DataAssetMapper.class.getName());
+
+    private final FileService fileService;
+
+    /**
+     * @param fileService service determining the file names of the distributions
+     */
+    public DataAssetMapper(FileService fileService) {
+        this.fileService = fileService;
+    }
+
+    public Dataset buildDataset(CKANDataset ckanDataset){
+        Dataset dataset = new Dataset();
+
+        dataset.setTags(ckanDataset.tags.stream().map(t -> t.display_name).collect(Collectors.toSet()));
+        dataset.setVersion(ckanDataset.version);
+        dataset.setStatus(DataAssetStatus.APPROVED);
+        dataset.setDescription(ckanDataset.notes);
+        dataset.setTitle(ckanDataset.title);
+        dataset.setResourceId(UUID.randomUUID().toString());
+        dataset.setLicense(ckanDataset.license_url);
+        return dataset;
+    }
+
+    /**
+     * The file name of the distribution is taken from a HEAD request to the resource URL, see
+     * {@link FileService#tryFile(String, Handler)}.
+     */
+    public void buildDistribution(CKANResource ckanResource, Dataset dataset, Handler<AsyncResult<Distribution>> resultHandler){
+        Distribution distribution = new Distribution();
+        distribution.setTitle(ckanResource.name);
+        distribution.setDescription(ckanResource.description);
+        distribution.setFiletype(ckanResource.format);
+        distribution.setResourceId(UUID.randomUUID().toString());
+        distribution.setLicense(dataset.getLicense());
+        fileService.tryFile(ckanResource.url, reply -> {
+            if(reply.succeeded()) {
+                distribution.setFilename(reply.result());
+                resultHandler.handle(Future.succeededFuture(distribution));
+            } else {
+                LOGGER.error(reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
+            }
+        });
+    }
+}
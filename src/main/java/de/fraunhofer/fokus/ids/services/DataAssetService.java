@@ -2,20 +2,24 @@ package de.fraunhofer.fokus.ids.services;
 
 import de.fraunhofer.fokus.ids.messages.DataAssetCreateMessage;
 import de.fraunhofer.fokus.ids.models.CKANDataset;
+import de.fraunhofer.fokus.ids.models.CKANDatasetSearch;
 import de.fraunhofer.fokus.ids.models.CKANResource;
 import de.fraunhofer.fokus.ids.persistence.entities.DataSource;
 import de.fraunhofer.fokus.ids.persistence.entities.Dataset;
 import de.fraunhofer.fokus.ids.persistence.entities.Distribution;
-import de.fraunhofer.fokus.ids.persistence.enums.DataAssetStatus;
+import de.fraunhofer.fokus.ids.services.cache.AccessInformationCache;
 import de.fraunhofer.fokus.ids.services.ckan.CKANService;
 import de.fraunhofer.fokus.ids.services.database.DatabaseService;
 import io.vertx.core.*;
-import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.streams.WriteStream;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.*;
 import java.util.stream.Collectors;
 /**
@@ -25,22 +29,34 @@ public class DataAssetService {
 
     private final Logger LOGGER = LoggerFactory.getLogger(DataAssetService.class.getName());
 
+    private Vertx vertx;
     private CKANService ckanService;
     private DatabaseService databaseService;
-    private FileService fileService;
+    private DataAssetMapper dataAssetMapper;
+    private AccessInformationCache accessInformationCache;
+
+    private static final int DEFAULT_BATCH_CONCURRENCY = 8;
+    private static final int DEFAULT_HARVEST_ROWS = 100;
 
-    private String RESOURCE_SHOW = "/resource_show?id=";
     private String PACKAGE_SHOW = "/package_show?id=";
+    private String RESOURCE_SHOW = "/resource_show?id=";
 
-    public DataAssetService(Vertx vertx){
-        this.ckanService = CKANService.createProxy(vertx, Constants.CKAN_SERVICE);
-        this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
-        this.fileService = new FileService(vertx);
+    private int batchConcurrency;
+
+    public DataAssetService(Vertx vertx, JsonObject config){
+        this.vertx = vertx;
+        this.batchConcurrency = config.getInteger("BATCH_CONCURRENCY", DEFAULT_BATCH_CONCURRENCY);
+        this.ckanService = CKANService.get(vertx, config);
+        this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE,
+                config.getLong("SERVICE_TIMEOUT", Constants.DEFAULT_SERVICE_TIMEOUT));
+        this.dataAssetMapper = new DataAssetMapper(new FileService(vertx, config));
+        this.accessInformationCache = AccessInformationCache.get(vertx, config);
     }
 
     public void deleteDataAsset(String id, Handler<AsyncResult<JsonObject>> resultHandler) {
         databaseService.update("DELETE FROM accessinformation WHERE datasetid=?", new JsonArray().add(id), databaseDeleteReply -> {
             if(databaseDeleteReply.succeeded()) {
+                accessInformationCache.removeDataset(id);
                 LOGGER.info("Data Asset successfully deleted.");
                 resultHandler.handle(Future.succeededFuture(new JsonObject().put("status","success")));
             }
@@ -51,169 +67,546 @@ public class DataAssetService {
         });
     }
 
-    private void saveAccessInformation(Distribution dist, CKANResource ckanResource, String datasetId, Handler<AsyncResult<Void>> resultHandler){
-            Date d = new Date();
-            databaseService.update("INSERT INTO accessinformation values(?,?,?,?,?)",
-                        new JsonArray().add(d.toInstant()).add(d.toInstant())
-                                .add(dist.getResourceId())
-                                .add(datasetId)
-                                .add(ckanResource.url), reply -> {
-                        if (reply.succeeded()) {
-                            resultHandler.handle(Future.succeededFuture());
-                        } else {
-                            LOGGER.error("Access information could not be inserted into database.", reply.cause());
-                            resultHandler.handle(Future.failedFuture(reply.cause()));
-                        }
-                    });
+    private JsonArray accessInformation(Distribution dist, CKANResource ckanResource, String datasetId){
+        Date d = new Date();
+        return new JsonArray().add(d.toInstant()).add(d.toInstant())
+                .add(dist.getResourceId())
+                .add(datasetId)
+                .add(ckanResource.url);
+    }
+
+    private void saveAccessInformation(List<JsonArray> accessInformation, Deadline deadline, Handler<AsyncResult<Void>> resultHandler){
+        databaseService(deadline).batchUpdate("INSERT INTO accessinformation values(?,?,?,?,?)", accessInformation, reply -> {
+            if (reply.succeeded()) {
+                for (JsonArray row : accessInformation) {
+                    accessInformationCache.put(row.getString(2), row.getString(3), row.getString(4));
+                }
+                resultHandler.handle(Future.succeededFuture());
+            } else {
+                LOGGER.error("Access information could not be inserted into database.", reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
+            }
+        });
+    }
+
+    /**
+     * Replaces the access information of the dataset a package was harvested into and records the dataset id of the
+     * package in one transaction, so a re-harvest leaves no rows of the previous harvest behind.
+     */
+    private void replaceAccessInformation(String sourceId, String packageId, String datasetId, List<JsonArray> accessInformation,
+                                          Deadline deadline, Handler<AsyncResult<Void>> resultHandler){
+        List<String> queries = new ArrayList<>();
+        List<JsonArray> params = new ArrayList<>();
+        queries.add("DELETE FROM accessinformation WHERE datasetid IN (SELECT datasetid FROM harvest_package WHERE sourceid = ? AND packageid = ?)");
+        params.add(new JsonArray().add(sourceId).add(packageId));
+        for (JsonArray row : accessInformation) {
+            queries.add("INSERT INTO accessinformation values(?,?,?,?,?)");
+            params.add(row);
+        }
+        queries.add("INSERT INTO harvest_package values(?,?,?) ON CONFLICT(sourceid, packageid) DO UPDATE SET datasetid = excluded.datasetid");
+        params.add(new JsonArray().add(sourceId).add(packageId).add(datasetId));
+        databaseService(deadline).transaction(queries, params, reply -> {
+            if (reply.succeeded()) {
+                accessInformationCache.removeDataset(datasetId);
+                for (JsonArray row : accessInformation) {
+                    accessInformationCache.put(row.getString(2), row.getString(3), row.getString(4));
+                }
+                resultHandler.handle(Future.succeededFuture());
+            } else {
+                LOGGER.error("Access information of package " + packageId + " could not be replaced.", reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
+            }
+        });
     }
 
     public void createDataAsset(DataAssetCreateMessage message, Handler<AsyncResult<JsonObject>> resultHandler) {
+        createDataAsset(message, Deadline.none(), resultHandler);
+    }
+
+    /**
+     * Creates a data asset, failing with a TimeoutException once the deadline expires. Work still pending at that
+     * point is not continued, in particular no access information is saved.
+     * @param deadline deadline of the request
+     */
+    public void createDataAsset(DataAssetCreateMessage message, Deadline deadline, Handler<AsyncResult<JsonObject>> resultHandler) {
         final Dataset dataset = new Dataset();
         dataset.setSourceId(message.getDataSource().getId());
         dataset.setResourceId(UUID.randomUUID().toString());
+        Handler<AsyncResult<JsonObject>> guardedHandler = deadline.guard(vertx, resultHandler);
         buildDataAsset(da -> replyDataAsset(da,
-                resultHandler),
+                guardedHandler),
                 message.getData().getString("resourceId",""),
-                message.getDataSource());
+                message.getDataSource(),
+                deadline);
     }
 
-    private void buildDataAsset(Handler<AsyncResult<Dataset>> next,
-                                String id,
-                                DataSource dataSource){
+    /**
+     * Creates a data asset for every id in the "resourceIds" array of the message data. The number of concurrent
+     * creations is limited per CKAN host, results are handed to itemHandler in order of completion. Ids not processed
+     * before the deadline expires are reported as errors. No further ids are started while the write queue of the
+     * output is full.
+     * @param message create message containing the data source and the resource or package ids
+     * @param deadline deadline of the whole batch
+     * @param output stream the items are written to, only used for flow control
+     * @param itemHandler receives the result of each id
+     * @param endHandler called once all ids have been processed
+     */
+    public void createDataAssets(DataAssetCreateMessage message, Deadline deadline, WriteStream<?> output, Handler<JsonObject> itemHandler, Handler<AsyncResult<Void>> endHandler) {
+        DataSource dataSource = message.getDataSource();
+        JsonArray ids = message.getData().getJsonArray("resourceIds", new JsonArray());
+        ConcurrencyLimiter limiter = getHostLimiter(dataSource.getData().getString("ckanApiUrl"));
+        new Batch(ids.iterator(), dataSource, deadline, limiter, output, itemHandler, endHandler).next();
+    }
 
-        ckanService.query(new JsonObject(Json.encode(dataSource)), id, PACKAGE_SHOW, packageReply -> {
-            if (packageReply.succeeded()) {
-                handlePackageURI(next, id, dataSource);
-            } else {
-                handleResourceURI(next, id, dataSource);
-            }
+    /**
+     * Harvests all packages of a CKAN portal by paging through package_search. The next page is requested while the
+     * current one is processed. Supported options: "organization" and "tag" to filter the packages, "rows" as page size
+     * and "incremental" to only harvest packages modified since the last successful incremental harvest of the data
+     * source. A package harvested before keeps its dataset id, the access information of its previous harvest is
+     * replaced.
+     * Once the deadline expires no further page is harvested and the harvest fails. The next page is only processed
+     * once the write queue of the output has room again.
+     * @param dataSource data source to harvest
+     * @param options harvest options
+     * @param deadline deadline of the whole harvest
+     * @param output stream the items are written to, only used for flow control
+     * @param itemHandler receives the result of each package
+     * @param endHandler called once all pages have been processed
+     */
+    public void harvest(DataSource dataSource, JsonObject options, Deadline deadline, WriteStream<?> output, Handler<JsonObject> itemHandler, Handler<AsyncResult<Void>> endHandler) {
+        String sourceId = String.valueOf(dataSource.getId());
+        if (options.getBoolean("incremental", false)) {
+            databaseService(deadline).query("SELECT last_modified FROM harvest WHERE sourceid = ?", new JsonArray().add(sourceId), reply -> {
+                if (reply.succeeded()) {
+                    String lastModified = reply.result().isEmpty() ? null : reply.result().get(0).getString("last_modified");
+                    startHarvest(dataSource, options, lastModified, deadline, output, itemHandler, endHandler);
+                } else {
+                    LOGGER.error("Harvest state could not be retrieved.", reply.cause());
+                    endHandler.handle(Future.failedFuture(reply.cause()));
+                }
+            });
+        } else {
+            startHarvest(dataSource, options, null, deadline, output, itemHandler, endHandler);
+        }
+    }
 
-        });
+    private void startHarvest(DataSource dataSource, JsonObject options, String lastModified, Deadline deadline, WriteStream<?> output, Handler<JsonObject> itemHandler, Handler<AsyncResult<Void>> endHandler) {
+        List<String> filters = new ArrayList<>();
+        if (options.getString("organization") != null) {
+            filters.add("organization:" + toSolrPhrase(options.getString("organization")));
+        }
+        if (options.getString("tag") != null) {
+            filters.add("tags:" + toSolrPhrase(options.getString("tag")));
+        }
+        if (lastModified != null) {
+            filters.add("metadata_modified:{" + toSolrDate(lastModified) + " TO *]");
+        }
+        JsonObject params = new JsonObject()
+                .put("sort", "metadata_modified asc")
+                .put("rows", options.getInteger("rows", DEFAULT_HARVEST_ROWS));
+        if (!filters.isEmpty()) {
+            params.put("fq", String.join(" AND ", filters));
+        }
+        HarvestState state = new HarvestState(lastModified);
+        harvestPage(dataSource, params, 0, searchPage(dataSource, params, 0, deadline), state, deadline, output, itemHandler, endHandler);
     }
 
-    private void handlePackageURI(Handler<AsyncResult<Dataset>> next,
-                                  String id,
-                                  DataSource dataSource) {
+    private void harvestPage(DataSource dataSource,
+                             JsonObject params,
+                             int start,
+                             Future<CKANDatasetSearch.Result> page,
+                             HarvestState state,
+                             Deadline deadline,
+                             WriteStream<?> output,
+                             Handler<JsonObject> itemHandler,
+                             Handler<AsyncResult<Void>> endHandler) {
+        page.onComplete(pageReply -> {
+            if (pageReply.failed()) {
+                LOGGER.error("Package search failed.", pageReply.cause());
+                endHandler.handle(Future.failedFuture(pageReply.cause()));
+                return;
+            }
+            CKANDatasetSearch.Result result = pageReply.result();
+            List<CKANDataset> packages = result.results == null ? new ArrayList<>() : result.results;
+            int nextStart = start + packages.size();
+            Future<CKANDatasetSearch.Result> nextPage = !packages.isEmpty() && result.count != null && nextStart < result.count
+                    ? searchPage(dataSource, params, nextStart, deadline)
+                    : null;
 
-        queryPackage(id, dataSource, packageReply -> {
-            if(packageReply.succeeded()){
-                CKANDataset ckanDataset = packageReply.result();
-                Dataset dataset = buildDataset(ckanDataset);
-                List<Promise<Distribution>> promises = new ArrayList<>();
-                for(CKANResource cr : ckanDataset.resources){
-                    Promise p = Promise.promise();
-                    promises.add(p);
-                    buildDistribution(cr, dataset, p);
-                }
-                CompositeFuture.all(promises.stream().map(Promise::future).collect(Collectors.toList())).onComplete(handler -> {
-                    if(handler.succeeded()){
-                        Set<Distribution> distributions = new HashSet();
-                        for(Promise<Distribution> promise : promises){
-                            distributions.add(promise.future().result());
-                        }
-                        dataset.setDistributions(distributions);
-                        next.handle(Future.succeededFuture(dataset));
+            List<Future> futures = new ArrayList<>();
+            for (CKANDataset ckanDataset : packages) {
+                Promise<Void> promise = Promise.promise();
+                futures.add(promise.future());
+                harvestPackage(reply -> {
+                    if (reply.succeeded()) {
+                        state.modified(ckanDataset.metadata_modified);
+                        itemHandler.handle(new JsonObject()
+                                .put("packageId", ckanDataset.id)
+                                .put("status", "success")
+                                .put("dataAsset", JsonObject.mapFrom(reply.result())));
                     } else {
-                        LOGGER.error(handler.cause());
-                        next.handle(Future.failedFuture(handler.cause()));
+                        state.failed = true;
+                        itemHandler.handle(new JsonObject()
+                                .put("packageId", ckanDataset.id)
+                                .put("status", "error")
+                                .put("message", String.valueOf(reply.cause().getMessage())));
                     }
-                });
-            } else {
-                LOGGER.error(packageReply.cause());
-                next.handle(Future.failedFuture(packageReply.cause()));
+                    promise.complete();
+                }, String.valueOf(dataSource.getId()), ckanDataset, deadline);
             }
+            CompositeFuture.join(futures).onComplete(processed -> {
+                if (nextPage != null && deadline.isExpired()) {
+                    LOGGER.info("Harvest deadline expired, harvest state is not updated.");
+                    endHandler.handle(Future.failedFuture(deadline.expired()));
+                } else if (nextPage != null) {
+                    Handler<Void> harvestNextPage = v ->
+                            harvestPage(dataSource, params, nextStart, nextPage, state, deadline, output, itemHandler, endHandler);
+                    if (output.writeQueueFull()) {
+                        output.drainHandler(harvestNextPage);
+                    } else {
+                        harvestNextPage.handle(null);
+                    }
+                } else {
+                    finishHarvest(dataSource, state, deadline, endHandler);
+                }
+            });
+        });
+    }
+
+    private void finishHarvest(DataSource dataSource, HarvestState state, Deadline deadline, Handler<AsyncResult<Void>> endHandler) {
+        if (state.failed) {
+            LOGGER.info("Harvest finished with errors, harvest state is not updated.");
+            endHandler.handle(Future.succeededFuture());
+        } else if (state.lastModified == null) {
+            endHandler.handle(Future.succeededFuture());
+        } else {
+            databaseService(deadline).update("INSERT INTO harvest values(?,?) ON CONFLICT(sourceid) DO UPDATE SET last_modified = excluded.last_modified",
+                    new JsonArray().add(String.valueOf(dataSource.getId())).add(state.lastModified), reply -> {
+                        if (reply.succeeded()) {
+                            endHandler.handle(Future.succeededFuture());
+                        } else {
+                            LOGGER.error("Harvest state could not be saved.", reply.cause());
+                            endHandler.handle(Future.failedFuture(reply.cause()));
+                        }
+                    });
+        }
+    }
 
+    private Future<CKANDatasetSearch.Result> searchPage(DataSource dataSource, JsonObject params, int start, Deadline deadline) {
+        Promise<CKANDatasetSearch.Result> promise = Promise.promise();
+        ckanService.search(dataSource.getData().getString("ckanApiUrl"), params.copy().put("start", start), deadline.timeout(), reply -> {
+            if (reply.succeeded()) {
+                promise.complete(reply.result().mapTo(CKANDatasetSearch.Result.class));
+            } else {
+                promise.fail(reply.cause());
+            }
         });
+        return promise.future();
+    }
 
+    /**
+     * Quotes a filter value, so Solr special characters in it are taken literally.
+     */
+    private String toSolrPhrase(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
     }
 
-    private void handleResourceURI(Handler<AsyncResult<Dataset>> next,
-                                   String id,
-                                   DataSource dataSource) {
-
-        queryResource(id, dataSource, resourceReply -> {
-            if(resourceReply.succeeded()){
-                queryPackage(resourceReply.result().package_id, dataSource, packageReply -> {
-                    if(packageReply.succeeded()) {
-                        Dataset dataset = buildDataset(packageReply.result());
-                        for (CKANResource cr : packageReply.result().resources) {
-                            if (cr.id.equals(id)) {
-                                buildDistribution(cr, dataset, reply -> {
-                                    if(reply.succeeded()){
-                                        Set<Distribution> distributions = new HashSet();
-                                        distributions.add(reply.result());
-                                        dataset.setDistributions(distributions);
-                                        next.handle(Future.succeededFuture(dataset));
-                                    } else {
-                                        LOGGER.error(reply.cause());
-                                        next.handle(Future.failedFuture(reply.cause()));
-                                    }
-                                });
-                            }
-                        }
-                    } else {
-                        LOGGER.error(packageReply.cause());
-                        next.handle(Future.failedFuture(packageReply.cause()));
-                    }
-                });
+    /**
+     * CKAN reports metadata_modified with microseconds and without time zone, Solr expects UTC with at most
+     * milliseconds.
+     */
+    private String toSolrDate(String metadataModified) {
+        String date = metadataModified.length() > 23 ? metadataModified.substring(0, 23) : metadataModified;
+        return date.endsWith("Z") ? date : date + "Z";
+    }
+
+    /**
+     * Ids of a batch are handed to the limiter one at a time: the next id is only taken once the previous one got a
+     * slot, and not while the write queue of the output is full. All callbacks run on the context of the batch. An id
+     * whose deadline expires is reported right away, but keeps its slot until its creation has actually completed.
+     */
+    private class Batch {
+        private final Iterator<Object> ids;
+        private final DataSource dataSource;
+        private final Deadline deadline;
+        private final ConcurrencyLimiter limiter;
+        private final WriteStream<?> output;
+        private final Handler<JsonObject> itemHandler;
+        private final Handler<AsyncResult<Void>> endHandler;
+        private int pending;
+        private boolean ended;
+
+        private Batch(Iterator<Object> ids, DataSource dataSource, Deadline deadline, ConcurrencyLimiter limiter,
+                      WriteStream<?> output, Handler<JsonObject> itemHandler, Handler<AsyncResult<Void>> endHandler) {
+            this.ids = ids;
+            this.dataSource = dataSource;
+            this.deadline = deadline;
+            this.limiter = limiter;
+            this.output = output;
+            this.itemHandler = itemHandler;
+            this.endHandler = endHandler;
+        }
+
+        private void next() {
+            if (!ids.hasNext()) {
+                endIfDone();
+                return;
+            }
+            if (output.writeQueueFull()) {
+                output.drainHandler(v -> next());
+                return;
+            }
+            String id = String.valueOf(ids.next());
+            pending++;
+            limiter.acquire(v -> {
+                next();
+                if (deadline.isExpired()) {
+                    limiter.release();
+                    done(id, Future.failedFuture(deadline.expired()));
+                } else {
+                    Handler<AsyncResult<Dataset>> guardedHandler = deadline.guard(vertx, reply -> done(id, reply));
+                    buildDataAsset(reply -> {
+                        limiter.release();
+                        guardedHandler.handle(reply);
+                    }, id, dataSource, deadline);
+                }
+            });
+        }
+
+        /**
+         * Reports the result of an id, called once per id. The limiter slot is released separately.
+         */
+        private void done(String id, AsyncResult<Dataset> reply) {
+            pending--;
+            if (reply.succeeded()) {
+                itemHandler.handle(new JsonObject()
+                        .put("resourceId", id)
+                        .put("status", "success")
+                        .put("dataAsset", JsonObject.mapFrom(reply.result())));
             } else {
-                LOGGER.error(resourceReply.cause());
-                next.handle(Future.failedFuture(resourceReply.cause()));
+                LOGGER.error("Data Asset " + id + " could not be created.", reply.cause());
+                itemHandler.handle(new JsonObject()
+                        .put("resourceId", id)
+                        .put("status", "error")
+                        .put("message", String.valueOf(reply.cause().getMessage())));
             }
+            endIfDone();
+        }
 
-        });
+        private void endIfDone() {
+            if (!ended && pending == 0 && !ids.hasNext()) {
+                ended = true;
+                endHandler.handle(Future.succeededFuture());
+            }
+        }
+    }
+
+    private static class HarvestState {
+        private String lastModified;
+        private boolean failed;
+
+        private HarvestState(String lastModified) {
+            this.lastModified = lastModified;
+        }
 
+        private synchronized void modified(String metadataModified) {
+            if (metadataModified != null && (lastModified == null || metadataModified.compareTo(lastModified) > 0)) {
+                lastModified = metadataModified;
+            }
+        }
     }
 
-    private Dataset buildDataset(CKANDataset ckanDataset){
-        Dataset dataset = new Dataset();
+    /**
+     * @return a database proxy whose calls time out with the deadline, the shared proxy if no deadline is set
+     */
+    private DatabaseService databaseService(Deadline deadline) {
+        return deadline.isSet()
+                ? DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE, deadline.timeout())
+                : databaseService;
+    }
 
-        dataset.setTags(ckanDataset.tags.stream().map(t -> t.display_name).collect(Collectors.toSet()));
-        dataset.setVersion(ckanDataset.version);
-        dataset.setStatus(DataAssetStatus.APPROVED);
-        dataset.setDescription(ckanDataset.notes);
-        dataset.setTitle(ckanDataset.title);
-        dataset.setResourceId(UUID.randomUUID().toString());
-        dataset.setLicense(ckanDataset.license_url);
-        return dataset;
-    }
-
-    private void buildDistribution(CKANResource ckanResource, Dataset dataset, Handler<AsyncResult<Distribution>> resultHandler){
-        Distribution distribution = new Distribution();
-        distribution.setTitle(ckanResource.name);
-        distribution.setDescription(ckanResource.description);
-        distribution.setFiletype(ckanResource.format);
-        distribution.setResourceId(UUID.randomUUID().toString());
-        distribution.setLicense(dataset.getLicense());
-        fileService.tryFile(ckanResource.url, reply -> {
-            if(reply.succeeded()) {
-                distribution.setFilename(reply.result());
-                saveAccessInformation(distribution, ckanResource, dataset.getResourceId(), reply2 -> {
-                    if (reply2.succeeded()) {
-                        resultHandler.handle(Future.succeededFuture(distribution));
+    /**
+     * The limiters are shared by all verticle instances, so the batch concurrency is bounded per CKAN host and process.
+     */
+    private ConcurrencyLimiter getHostLimiter(String ckanApiUrl) {
+        String host;
+        try {
+            host = new URL(ckanApiUrl).getAuthority();
+        } catch (MalformedURLException e) {
+            host = String.valueOf(ckanApiUrl);
+        }
+        LocalMap<String, ConcurrencyLimiter> limiters = vertx.sharedData().getLocalMap(Constants.BATCH_LIMITERS);
+        ConcurrencyLimiter limiter = limiters.get(host);
+        if (limiter == null) {
+            limiter = new ConcurrencyLimiter(batchConcurrency);
+            ConcurrencyLimiter existing = limiters.putIfAbsent(host, limiter);
+            if (existing != null) {
+                limiter = existing;
+            }
+        }
+        return limiter;
+    }
+
+    private void buildDataAsset(Handler<AsyncResult<Dataset>> next,
+                                String id,
+                                DataSource dataSource,
+                                Deadline deadline){
+
+        Promise<CKANResource> resourcePromise = Promise.promise();
+        queryResource(id, dataSource, deadline, resourcePromise);
+        queryPackage(id, dataSource, deadline, packageReply -> {
+            if (packageReply.succeeded()) {
+                handlePackage(next, packageReply.result(), null, null, deadline);
+            } else if (Deadline.isTimeout(packageReply.cause()) || deadline.isExpired()
+                    || CircuitOpenException.isCircuitOpen(packageReply.cause())) {
+                next.handle(Future.failedFuture(packageReply.cause()));
+            } else {
+                resourcePromise.future().onComplete(resourceReply -> handleResource(next, id, resourceReply, dataSource, deadline));
+            }
+        });
+    }
+
+    /**
+     * Looks up the dataset a package was harvested into before, so its access information is replaced instead of
+     * being added to.
+     */
+    private void harvestPackage(Handler<AsyncResult<Dataset>> next,
+                                String sourceId,
+                                CKANDataset ckanDataset,
+                                Deadline deadline) {
+
+        databaseService(deadline).query("SELECT datasetid FROM harvest_package WHERE sourceid = ? AND packageid = ?",
+                new JsonArray().add(sourceId).add(ckanDataset.id), reply -> {
+                    if (reply.succeeded()) {
+                        String datasetId = reply.result().isEmpty() ? null : reply.result().get(0).getString("datasetid");
+                        handlePackage(next, ckanDataset, sourceId, datasetId, deadline);
                     } else {
-                        LOGGER.error(reply2.cause());
-                        resultHandler.handle(Future.failedFuture(reply2.cause()));
+                        LOGGER.error("Harvested dataset of package " + ckanDataset.id + " could not be retrieved.", reply.cause());
+                        next.handle(Future.failedFuture(reply.cause()));
                     }
                 });
+    }
+
+    /**
+     * @param sourceId data source the package is harvested from, null if it is not harvested
+     * @param datasetId id of the dataset the package was harvested into before, null to create a new one
+     */
+    private void handlePackage(Handler<AsyncResult<Dataset>> next,
+                               CKANDataset ckanDataset,
+                               String sourceId,
+                               String datasetId,
+                               Deadline deadline) {
+
+        Dataset dataset = dataAssetMapper.buildDataset(ckanDataset);
+        if (datasetId != null) {
+            dataset.setResourceId(datasetId);
+        }
+        List<Promise<Distribution>> promises = new ArrayList<>();
+        for(CKANResource cr : ckanDataset.resources){
+            Promise p = Promise.promise();
+            promises.add(p);
+            dataAssetMapper.buildDistribution(cr, dataset, p);
+        }
+        CompositeFuture.all(promises.stream().map(Promise::future).collect(Collectors.toList())).onComplete(handler -> {
+            if(handler.succeeded() && deadline.isExpired()){
+                next.handle(Future.failedFuture(deadline.expired()));
+            } else if(handler.succeeded()){
+                Set<Distribution> distributions = new HashSet();
+                List<JsonArray> accessInformation = new ArrayList<>();
+                for(int i = 0; i < promises.size(); i++){
+                    Distribution distribution = promises.get(i).future().result();
+                    distributions.add(distribution);
+                    accessInformation.add(accessInformation(distribution, ckanDataset.resources.get(i), dataset.getResourceId()));
+                }
+                dataset.setDistributions(distributions);
+                Handler<AsyncResult<Void>> saved = reply -> {
+                    if (reply.succeeded()) {
+                        next.handle(Future.succeededFuture(dataset));
+                    } else {
+                        next.handle(Future.failedFuture(reply.cause()));
+                    }
+                };
+                if (sourceId == null) {
+                    saveAccessInformation(accessInformation, deadline, saved);
+                } else {
+                    replaceAccessInformation(sourceId, ckanDataset.id, dataset.getResourceId(), accessInformation, deadline, saved);
+                }
+            } else {
+                LOGGER.error(handler.cause());
+                next.handle(Future.failedFuture(handler.cause()));
             }
-    });
+        });
+    }
+
+    /**
+     * Resolves a resource id through the package_id of its resource_show reply, which is requested together with the
+     * package_show probe so that resource ids cost no additional round trip.
+     */
+    private void handleResource(Handler<AsyncResult<Dataset>> next,
+                                String id,
+                                AsyncResult<CKANResource> resourceReply,
+                                DataSource dataSource,
+                                Deadline deadline) {
+
+        if (resourceReply.failed()) {
+            LOGGER.error(resourceReply.cause());
+            next.handle(Future.failedFuture(resourceReply.cause()));
+            return;
+        }
+        queryPackage(resourceReply.result().package_id, dataSource, deadline, packageReply -> {
+            if(packageReply.succeeded()) {
+                Dataset dataset = dataAssetMapper.buildDataset(packageReply.result());
+                Optional<CKANResource> resource = packageReply.result().resources.stream()
+                        .filter(cr -> cr.id.equals(id))
+                        .findFirst();
+                if (resource.isPresent()) {
+                    dataAssetMapper.buildDistribution(resource.get(), dataset, reply -> {
+                        if(reply.succeeded() && deadline.isExpired()){
+                            next.handle(Future.failedFuture(deadline.expired()));
+                        } else if(reply.succeeded()){
+                            Set<Distribution> distributions = new HashSet();
+                            distributions.add(reply.result());
+                            dataset.setDistributions(distributions);
+                            List<JsonArray> accessInformation = new ArrayList<>();
+                            accessInformation.add(accessInformation(reply.result(), resource.get(), dataset.getResourceId()));
+                            saveAccessInformation(accessInformation, deadline, reply2 -> {
+                                if (reply2.succeeded()) {
+                                    next.handle(Future.succeededFuture(dataset));
+                                } else {
+                                    next.handle(Future.failedFuture(reply2.cause()));
+                                }
+                            });
+                        } else {
+                            LOGGER.error(reply.cause());
+                            next.handle(Future.failedFuture(reply.cause()));
+                        }
+                    });
+                } else {
+                    LOGGER.error("Resource " + id + " not found in package " + packageReply.result().id);
+                    next.handle(Future.failedFuture("Resource " + id + " not found."));
+                }
+            } else {
+                LOGGER.error(packageReply.cause());
+                next.handle(Future.failedFuture(packageReply.cause()));
+            }
+        });
+
     }
 
-    private void queryPackage(String id, DataSource dataSource, Handler<AsyncResult<CKANDataset>> next) {
-        ckanService.query(new JsonObject(Json.encode(dataSource)), id, PACKAGE_SHOW, reply -> {
+    private void queryPackage(String id, DataSource dataSource, Deadline deadline, Handler<AsyncResult<CKANDataset>> next) {
+        ckanService.query(dataSource.getData().getString("ckanApiUrl"), id, PACKAGE_SHOW, deadline.timeout(), reply -> {
             if(reply.succeeded()){
-                next.handle(Future.succeededFuture(Json.decodeValue(reply.result().toString(), CKANDataset.class)));
+                next.handle(Future.succeededFuture(reply.result().mapTo(CKANDataset.class)));
             } else {
                 next.handle(Future.failedFuture(reply.cause()));
             }
         });
     }
 
-    private void queryResource(String id, DataSource dataSource, Handler<AsyncResult<CKANResource>> next) {
-        ckanService.query(new JsonObject(Json.encode(dataSource)), id, RESOURCE_SHOW, reply -> {
+    private void queryResource(String id, DataSource dataSource, Deadline deadline, Handler<AsyncResult<CKANResource>> next) {
+        ckanService.query(dataSource.getData().getString("ckanApiUrl"), id, RESOURCE_SHOW, deadline.timeout(), reply -> {
             if(reply.succeeded()){
-                next.handle(Future.succeededFuture(Json.decodeValue(reply.result().toString(), CKANResource.class)));
+                next.handle(Future.succeededFuture(reply.result().mapTo(CKANResource.class)));
             } else {
                 next.handle(Future.failedFuture(reply.cause()));
             }
@@ -222,7 +615,7 @@ public class DataAssetService {
 
     private void replyDataAsset(AsyncResult<Dataset> result, Handler<AsyncResult<JsonObject>> resultHandler){
         if(result.succeeded()) {
-            resultHandler.handle(Future.succeededFuture(new JsonObject(Json.encode(result.result()))));
+            resultHandler.handle(Future.succeededFuture(JsonObject.mapFrom(result.result())));
         }
         else {
             LOGGER.error("Final Data Asset future failed.", result.cause());
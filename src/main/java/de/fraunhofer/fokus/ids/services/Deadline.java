@@ -0,0 +1,128 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Point in time by which a request has to be answered. The remaining time is used as timeout of the CKAN, database
+ * and file host calls made on behalf of the request, work that is still pending when the deadline expires is not
+ * continued.
+ */
+public class Deadline {
+
+    public static final String HEADER = "X-Request-Timeout";
+
+    /**
+     * Longest supported timeout, keeps the expiry far from an overflow of {@link System#nanoTime()}.
+     */
+    private static final long MAX_TIMEOUT = TimeUnit.DAYS.toMillis(1);
+
+    private static final Deadline NONE = new Deadline(0);
+
+    private final long timeoutMillis;
+    private final long expiresAt;
+
+    private Deadline(long timeoutMillis) {
+        this.timeoutMillis = Math.min(timeoutMillis, MAX_TIMEOUT);
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis);
+    }
+
+    /**
+     * @return a deadline that never expires
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * @param timeoutMillis time from now in ms, 0 or less for no deadline
+     */
+    public static Deadline in(long timeoutMillis) {
+        return timeoutMillis > 0 ? new Deadline(timeoutMillis) : NONE;
+    }
+
+    /**
+     * Takes the deadline from the X-Request-Timeout header (ms) of the request, a client may shorten but not extend
+     * the maximum timeout.
+     * @param defaultTimeoutMillis timeout if the header is missing or invalid, 0 for no deadline
+     * @param maxTimeoutMillis upper bound of the timeout set by the header, 0 for no bound
+     */
+    public static Deadline of(HttpServerRequest request, long defaultTimeoutMillis, long maxTimeoutMillis) {
+        String header = request.getHeader(HEADER);
+        if (header != null) {
+            try {
+                long timeoutMillis = Long.parseLong(header.trim());
+                if (timeoutMillis > 0) {
+                    return new Deadline(maxTimeoutMillis > 0 ? Math.min(timeoutMillis, maxTimeoutMillis) : timeoutMillis);
+                }
+            } catch (NumberFormatException e) {
+                // fall through to the default
+            }
+        }
+        return in(defaultTimeoutMillis);
+    }
+
+    public boolean isSet() {
+        return this != NONE;
+    }
+
+    public boolean isExpired() {
+        return isSet() && System.nanoTime() - expiresAt >= 0;
+    }
+
+    /**
+     * @return the remaining time in ms to be used as timeout of a call (at least 1), 0 if no deadline is set
+     */
+    public long timeout() {
+        if (!isSet()) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    /**
+     * @return the failure reported for work that did not finish in time
+     */
+    public TimeoutException expired() {
+        return new TimeoutException("Deadline of " + timeoutMillis + " ms expired.");
+    }
+
+    /**
+     * Wraps a result handler, so it is called exactly once: with the first result, or with a TimeoutException once the
+     * deadline expires. Results arriving after that are dropped.
+     */
+    public <T> Handler<AsyncResult<T>> guard(Vertx vertx, Handler<AsyncResult<T>> handler) {
+        if (!isSet()) {
+            return handler;
+        }
+        Promise<T> promise = Promise.promise();
+        long timer = vertx.setTimer(timeout(), t -> promise.tryFail(expired()));
+        promise.future().onComplete(reply -> {
+            vertx.cancelTimer(timer);
+            handler.handle(reply);
+        });
+        return reply -> {
+            if (reply.succeeded()) {
+                promise.tryComplete(reply.result());
+            } else {
+                promise.tryFail(reply.cause());
+            }
+        };
+    }
+
+    /**
+     * @return true if the failure is a timeout of an HTTP request or an event bus call
+     */
+    public static boolean isTimeout(Throwable t) {
+        return t instanceof TimeoutException
+                || t instanceof ReplyException && ((ReplyException) t).failureType() == ReplyFailure.TIMEOUT;
+    }
+}
@@ -3,27 +3,45 @@ package de.fraunhofer.fokus.ids.services;
 import de.fraunhofer.fokus.ids.enums.FileType;
 import de.fraunhofer.fokus.ids.messages.ResourceRequest;
 import de.fraunhofer.fokus.ids.persistence.entities.Distribution;
+import de.fraunhofer.fokus.ids.services.cache.AccessInformationCache;
+import de.fraunhofer.fokus.ids.services.cache.ExpiringCache;
+import de.fraunhofer.fokus.ids.services.cache.FileCache;
+import de.fraunhofer.fokus.ids.services.conversion.FormatConverter;
+import de.fraunhofer.fokus.ids.services.conversion.FormatConverters;
 import de.fraunhofer.fokus.ids.services.database.DatabaseService;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
-import io.vertx.ext.web.codec.BodyCodec;
 
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -33,46 +51,123 @@ public class FileService {
 
     private final Logger LOGGER = LoggerFactory.getLogger(DataAssetService.class.getName());
 
+    private static final long DEFAULT_PROBE_TIMEOUT = 5000;
+    private static final int DEFAULT_FILENAME_CACHE_SIZE = 10000;
+    private static final long DEFAULT_FILENAME_CACHE_TTL_SECONDS = 3600;
+    private static final int DEFAULT_WRITE_QUEUE_SIZE = 256 * 1024;
+
+    private static final List<CharSequence> FORWARDED_REQUEST_HEADERS = Arrays.asList(
+            HttpHeaderNames.RANGE,
+            HttpHeaderNames.IF_RANGE,
+            HttpHeaderNames.IF_NONE_MATCH,
+            HttpHeaderNames.IF_MODIFIED_SINCE);
+
+    private static final List<CharSequence> FORWARDED_RESPONSE_HEADERS = Arrays.asList(
+            HttpHeaderNames.CONTENT_TYPE,
+            HttpHeaderNames.CONTENT_LENGTH,
+            HttpHeaderNames.CONTENT_RANGE,
+            HttpHeaderNames.ACCEPT_RANGES,
+            HttpHeaderNames.ETAG,
+            HttpHeaderNames.LAST_MODIFIED,
+            HttpHeaderNames.CONTENT_DISPOSITION,
+            HttpHeaderNames.CACHE_CONTROL,
+            HttpHeaderNames.EXPIRES,
+            HttpHeaderNames.CONTENT_ENCODING,
+            HttpHeaderNames.VARY);
+
+    private static final List<String> COMPRESSIBLE_CONTENT_TYPES = Arrays.asList(
+            "text/",
+            "application/json",
+            "application/xml",
+            "application/csv",
+            "application/javascript",
+            "application/x-ndjson",
+            "+json",
+            "+xml");
+
+    private Vertx vertx;
     private DatabaseService databaseService;
+    private AccessInformationCache accessInformationCache;
+    private ExpiringCache<String, String> filenameCache;
+    private FileCache fileCache;
+    private TransferStatistics transferStatistics;
+    private int writeQueueSize;
+    private HostGuards hostGuards;
+    private long probeTimeout;
     WebClient webClient;
-    public FileService(Vertx vertx){
-        WebClientOptions options = new WebClientOptions().setTrustAll(true);
-        this.webClient = WebClient.create(vertx, options);
-        this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+    HttpClient fileHttpClient;
+    public FileService(Vertx vertx, JsonObject config){
+        this.vertx = vertx;
+        this.hostGuards = HostGuards.get(vertx, HostGuards.FILE, config);
+        this.probeTimeout = config.getLong("PROBE_TIMEOUT", DEFAULT_PROBE_TIMEOUT);
+        this.filenameCache = new ExpiringCache<>(
+                config.getInteger("FILENAME_CACHE_SIZE", DEFAULT_FILENAME_CACHE_SIZE),
+                config.getLong("FILENAME_CACHE_TTL", DEFAULT_FILENAME_CACHE_TTL_SECONDS) * 1000);
+        this.webClient = HttpClients.get(vertx, config).fileClient();
+        this.fileHttpClient = HttpClients.get(vertx, config).fileHttpClient();
+        this.fileCache = FileCache.get(vertx, config);
+        this.transferStatistics = TransferStatistics.get(vertx);
+        this.writeQueueSize = config.getInteger("TRANSFER_WRITE_QUEUE_SIZE", DEFAULT_WRITE_QUEUE_SIZE);
+        this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE,
+                config.getLong("SERVICE_TIMEOUT", Constants.DEFAULT_SERVICE_TIMEOUT));
+        this.accessInformationCache = AccessInformationCache.get(vertx, config);
     }
 
-    public void getFile(ResourceRequest resourceRequest,HttpServerResponse httpServerResponse) {
+    public void getFile(ResourceRequest resourceRequest, HttpServerRequest httpServerRequest) {
+        getFile(resourceRequest, httpServerRequest, Deadline.none());
+    }
 
-        if(resourceRequest.getFileType().equals(FileType.JSON)) {
-            getPayload(resourceRequest.getDataAsset(), "json",httpServerResponse);
-        }
-        if(resourceRequest.getFileType().equals(FileType.TXT)) {
-            getPayload(resourceRequest.getDataAsset(), "txt",httpServerResponse);
-        }
-        getPayload(resourceRequest.getDataAsset(), "multi",httpServerResponse);
+    /**
+     * @param deadline deadline until the upstream has to answer, the transfer of the body itself is not limited
+     */
+    public void getFile(ResourceRequest resourceRequest, HttpServerRequest httpServerRequest, Deadline deadline) {
+        getPayload(resourceRequest.getDataAsset(), resourceRequest.getFileType(), httpServerRequest, deadline);
     }
 
-    private void getPayload(Distribution distribution, String extension, HttpServerResponse httpServerResponse) {
+    private void getPayload(Distribution distribution, FileType fileType, HttpServerRequest httpServerRequest, Deadline deadline) {
+        HttpServerResponse httpServerResponse = httpServerRequest.response();
         getAccessInformation(resultHandler->{
             if (resultHandler.succeeded()){
-                if (resultHandler.result() != null) {
-                    streamFile(resultHandler.result(),httpServerResponse);
-                } else {
+                if (resultHandler.result() == null) {
                     LOGGER.error("File is null");
                     httpServerResponse.setStatusCode(404).end();
+                } else if (deadline.isExpired()) {
+                    httpServerResponse.setStatusCode(504).end();
+                } else {
+                    streamFile(resultHandler.result(), distribution.getResourceId(), transform(distribution.getFiletype(), fileType), deadline, httpServerRequest);
                 }
             }else {
                 LOGGER.error(resultHandler.cause());
-                httpServerResponse.setStatusCode(404).end();
-            }},distribution);
+                httpServerResponse.setStatusCode(Deadline.isTimeout(resultHandler.cause()) ? 504 : 404).end();
+            }},distribution, deadline);
     }
 
-    private void getAccessInformation(Handler<AsyncResult<String>> resultHandler, Distribution distribution){
+    /**
+     * @return a database proxy whose calls time out with the deadline, the shared proxy if no deadline is set
+     */
+    private DatabaseService databaseService(Deadline deadline) {
+        return deadline.isSet()
+                ? DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE, deadline.timeout())
+                : databaseService;
+    }
 
-        databaseService.query("SELECT url from accessinformation WHERE distributionid = ?", new JsonArray().add(distribution.getResourceId()), reply -> {
+    private void getAccessInformation(Handler<AsyncResult<String>> resultHandler, Distribution distribution, Deadline deadline){
+
+        String cachedUrl = accessInformationCache.getUrl(distribution.getResourceId());
+        if(cachedUrl != null){
+            resultHandler.handle(Future.succeededFuture(cachedUrl));
+            return;
+        }
+        databaseService(deadline).query("SELECT url, datasetid from accessinformation WHERE distributionid = ?", new JsonArray().add(distribution.getResourceId()), reply -> {
 
             if(reply.succeeded()){
-                resultHandler.handle(Future.succeededFuture(reply.result().get(0).getString("url")));
+                if(reply.result().isEmpty()){
+                    resultHandler.handle(Future.succeededFuture());
+                } else {
+                    JsonObject accessInformation = reply.result().get(0);
+                    accessInformationCache.put(distribution.getResourceId(), accessInformation.getString("datasetid"), accessInformation.getString("url"));
+                    resultHandler.handle(Future.succeededFuture(accessInformation.getString("url")));
+                }
             }
             else{
                 LOGGER.error("File information could not be retrieved.", reply.cause());
@@ -82,83 +177,335 @@ public class FileService {
 
     }
 
+    /**
+     * Determines the file name of a resource from the Content-Disposition header of a HEAD request. The number of
+     * concurrent HEAD requests per host adapts to the host's failures and the file name is derived from the URL path
+     * if no answer arrives within the probe timeout or the circuit breaker of the host is open.
+     * @param urlString URL of the resource
+     * @param resultHandler receives the file name, never fails
+     */
     public void tryFile(String urlString, Handler<AsyncResult<String>> resultHandler){
-        URL url = null;
+        String cachedFilename = filenameCache.get(urlString);
+        if (cachedFilename != null) {
+            resultHandler.handle(Future.succeededFuture(cachedFilename));
+            return;
+        }
+        URL url;
         try {
             url = new URL(urlString);
         } catch (MalformedURLException e) {
             LOGGER.error(e);
+            resultHandler.handle(Future.succeededFuture(resolvePath(urlString)));
+            return;
         }
-        webClient
-                .headAbs(url.toString())
-                .send(ar -> {
-                    if (ar.succeeded()) {
-                        HttpResponse<Buffer> response2 = ar.result();
-                        String contentDisposition = response2.getHeader(HttpHeaders.CONTENT_DISPOSITION.toString());
-                        if (contentDisposition != null && contentDisposition.contains("filename")) {
-                            String[] dispSplit = contentDisposition.substring(contentDisposition.indexOf("filename")).split("\"");
-                            if (dispSplit.length > 1) {
-                                String filename = dispSplit[1].trim();
-                                resultHandler.handle(Future.succeededFuture(filename));
-                            } else {
-                                resultHandler.handle(Future.succeededFuture(resolvePath(urlString)));
+        Promise<String> promise = Promise.promise();
+        long timer = vertx.setTimer(probeTimeout, t -> {
+            if (promise.tryComplete(resolvePath(urlString))) {
+                LOGGER.info("HEAD request to " + urlString + " timed out.");
+            }
+        });
+        promise.future().onComplete(reply -> {
+            vertx.cancelTimer(timer);
+            resultHandler.handle(reply);
+        });
+
+        HostGuard guard = hostGuards.forHost(url.getAuthority());
+        long queued = System.nanoTime();
+        guard.acquire(v -> {
+            AdapterMetrics.recordWait(AdapterMetrics.FILE_PROBE_QUEUE, queued);
+            if (promise.future().isComplete()) {
+                guard.cancel();
+                return;
+            }
+            long start = System.nanoTime();
+            webClient
+                    .headAbs(url.toString())
+                    .timeout(probeTimeout)
+                    .send(ar -> {
+                        guard.release(ar.succeeded() && ar.result().statusCode() < 500 && ar.result().statusCode() != 429);
+                        AdapterMetrics.record(AdapterMetrics.FILE_PROBES, start, ar.succeeded());
+                        if (ar.succeeded()) {
+                            String filename = filenameFromHeader(ar.result());
+                            if (filename == null) {
+                                filename = resolvePath(urlString);
                             }
+                            filenameCache.put(urlString, filename);
+                            promise.tryComplete(filename);
                         } else {
-                            resultHandler.handle(Future.succeededFuture(resolvePath(urlString)));                        }
-                    } else {
-                        resultHandler.handle(Future.succeededFuture(resolvePath(urlString)));                    }
-                });
+                            promise.tryComplete(resolvePath(urlString));
+                        }
+                    });
+        }, rejected -> promise.tryComplete(resolvePath(urlString)));
+    }
+
+    private String filenameFromHeader(HttpResponse<Buffer> response) {
+        String contentDisposition = response.getHeader(HttpHeaders.CONTENT_DISPOSITION.toString());
+        if (contentDisposition != null && contentDisposition.contains("filename")) {
+            String[] dispSplit = contentDisposition.substring(contentDisposition.indexOf("filename")).split("\"");
+            if (dispSplit.length > 1) {
+                return dispSplit[1].trim();
+            }
+        }
+        return null;
     }
 
     private String resolvePath(String url){
         try {
-            return Paths.get(new URI(url).getPath()).getFileName().toString();
-
-        } catch (URISyntaxException e) {
+            Path fileName = Paths.get(new URI(url).getPath()).getFileName();
+            return fileName != null ? fileName.toString() : UUID.randomUUID().toString();
+        } catch (URISyntaxException | InvalidPathException e) {
             return UUID.randomUUID().toString();
         }
     }
 
 
-    public void streamFile(String urlString , HttpServerResponse response){
-        URL url = null;
+    /**
+     * Streams a file from its upstream URL to the consumer. Range and conditional request headers of the consumer are
+     * forwarded, status code, length and validators of the upstream response are passed back, so downloads can be
+     * resumed and revalidated. If the file cache is enabled, plain requests are answered from the cache when the
+     * upstream confirms the cached copy is current, otherwise the upstream body is written to the cache while it is
+     * streamed to the consumer.
+     * @param urlString upstream URL of the file
+     * @param distributionId id of the distribution the file belongs to
+     * @param request consumer request
+     */
+    public void streamFile(String urlString, String distributionId, HttpServerRequest request){
+        streamFile(urlString, distributionId, null, Deadline.none(), request);
+    }
+
+    /**
+     * Streams a file from its upstream URL to the consumer, converting it on the fly if a converter is given. Converted
+     * files are neither cached nor requested with the consumer's range and conditional headers. If neither conversion
+     * nor caching applies, the consumer's Accept-Encoding is forwarded and a compressed upstream body is passed through
+     * as it is, otherwise the HTTP server compresses text formats. If the upstream does not answer before the deadline,
+     * the upstream request is reset and the consumer receives a 504.
+     * @param urlString upstream URL of the file
+     * @param distributionId id of the distribution the file belongs to
+     * @param converter converter to apply, null to deliver the file as it is
+     * @param deadline deadline until the upstream has to answer
+     * @param request consumer request
+     */
+    public void streamFile(String urlString, String distributionId, FormatConverter converter, Deadline deadline, HttpServerRequest request){
+        HttpServerResponse response = request.response();
+        URL url;
         try {
             url = new URL(urlString);
         } catch (MalformedURLException e) {
             LOGGER.error(e);
             response.setStatusCode(404).end();
+            return;
         }
         LOGGER.info("Piping file from "+urlString);
-        response.putHeader("Transfer-Encoding", "chunked");
-        webClient
-                .getAbs(url.toString())
-                .as(BodyCodec.pipe(response))
-                .send(ar -> {
-                    if (ar.succeeded()) {
-                        HttpResponse<Void> response2 = ar.result();
-                        LOGGER.info("Received response with status code " + response2.statusCode());
+        boolean cacheable = converter == null && fileCache.isEnabled() && FORWARDED_REQUEST_HEADERS.stream().noneMatch(h -> request.getHeader(h) != null);
+        FileCache.CachedFile cachedFile = cacheable ? fileCache.get(distributionId) : null;
+
+        HttpClientRequest upstreamRequest = fileHttpClient.requestAbs(HttpMethod.GET, url.toString());
+        upstreamRequest.setFollowRedirects(true);
+        for (CharSequence header : FORWARDED_REQUEST_HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null && converter == null) {
+                upstreamRequest.putHeader(header, value);
+            }
+        }
+        String acceptEncoding = request.getHeader(HttpHeaderNames.ACCEPT_ENCODING);
+        if (acceptEncoding != null && converter == null && !cacheable) {
+            upstreamRequest.putHeader(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (cachedFile != null) {
+            if (cachedFile.etag != null) {
+                upstreamRequest.putHeader(HttpHeaderNames.IF_NONE_MATCH, cachedFile.etag);
+            }
+            if (cachedFile.lastModified != null) {
+                upstreamRequest.putHeader(HttpHeaderNames.IF_MODIFIED_SINCE, cachedFile.lastModified);
+            }
+        }
+        Promise<Void> answered = Promise.promise();
+        long deadlineTimer = deadline.isSet() ? vertx.setTimer(deadline.timeout(), t -> {
+            if (answered.tryFail(deadline.expired())) {
+                LOGGER.error("Upstream did not answer before the deadline: " + urlString);
+                upstreamRequest.reset();
+                if (cachedFile != null && !response.headWritten()) {
+                    sendCachedFile(cachedFile, response);
+                } else if (!response.headWritten()) {
+                    response.setStatusCode(504).end();
+                }
+            }
+        }) : -1;
+        upstreamRequest.handler(upstreamResponse -> {
+            vertx.cancelTimer(deadlineTimer);
+            answered.tryComplete();
+            LOGGER.info("Received response with status code " + upstreamResponse.statusCode());
+            if (cachedFile != null && upstreamResponse.statusCode() == 304) {
+                sendCachedFile(cachedFile, response);
+                return;
+            }
+            if (converter != null && upstreamResponse.statusCode() == 200) {
+                response.setStatusCode(200);
+                response.putHeader(HttpHeaderNames.CONTENT_TYPE, converter.getContentType());
+                response.setChunked(true);
+                transfer(upstreamResponse, response, null, converter, reply -> {});
+                return;
+            }
+            response.setStatusCode(upstreamResponse.statusCode());
+            for (CharSequence header : FORWARDED_RESPONSE_HEADERS) {
+                String value = upstreamResponse.getHeader(header);
+                if (value != null) {
+                    response.putHeader(header, value);
+                }
+            }
+            if (upstreamResponse.statusCode() == 304) {
+                response.end();
+                return;
+            }
+            if (upstreamResponse.getHeader(HttpHeaderNames.CONTENT_ENCODING) == null
+                    && (upstreamResponse.statusCode() == 206 || !isCompressible(upstreamResponse.getHeader(HttpHeaderNames.CONTENT_TYPE)))) {
+                response.putHeader(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+            }
+            if (upstreamResponse.getHeader(HttpHeaders.CONTENT_LENGTH) == null) {
+                response.setChunked(true);
+            }
+            if (cacheable && upstreamResponse.statusCode() == 200) {
+                cacheAndTransfer(distributionId, upstreamResponse, response);
+            } else {
+                transfer(upstreamResponse, response, null, null, reply -> {});
+            }
+        });
+        upstreamRequest.exceptionHandler(t -> {
+            vertx.cancelTimer(deadlineTimer);
+            if (answered.future().failed()) {
+                return;
+            }
+            LOGGER.error("Something went wrong " + t.getMessage());
+            if (cachedFile != null && !response.headWritten()) {
+                LOGGER.info("Upstream not reachable, serving cached file.");
+                sendCachedFile(cachedFile, response);
+            } else if (!response.headWritten()) {
+                response.setStatusCode(Deadline.isTimeout(t) ? 504 : 502).end();
+            } else {
+                response.reset();
+            }
+        });
+        response.closeHandler(v -> upstreamRequest.reset());
+        upstreamRequest.end();
+    }
+
+    private void cacheAndTransfer(String distributionId, HttpClientResponse upstreamResponse, HttpServerResponse response) {
+        String etag = upstreamResponse.getHeader(HttpHeaderNames.ETAG);
+        String lastModified = upstreamResponse.getHeader(HttpHeaderNames.LAST_MODIFIED);
+        long size;
+        try {
+            size = Long.parseLong(upstreamResponse.getHeader(HttpHeaderNames.CONTENT_LENGTH));
+        } catch (NumberFormatException | NullPointerException e) {
+            size = -1;
+        }
+        if ((etag == null && lastModified == null) || !fileCache.accepts(size)) {
+            fileCache.remove(distributionId);
+            transfer(upstreamResponse, response, null, null, reply -> {});
+            return;
+        }
+        FileCache.CachedFile cachedFile = new FileCache.CachedFile(fileCache.newFilePath(), size, etag, lastModified,
+                upstreamResponse.getHeader(HttpHeaderNames.CONTENT_TYPE),
+                upstreamResponse.getHeader(HttpHeaderNames.CONTENT_DISPOSITION));
+        upstreamResponse.pause();
+        vertx.fileSystem().open(cachedFile.path, new OpenOptions().setWrite(true).setCreateNew(true), open -> {
+            if (open.succeeded()) {
+                transfer(upstreamResponse, response, open.result(), null, reply -> {
+                    if (reply.succeeded()) {
+                        fileCache.put(distributionId, cachedFile);
                     } else {
-                       LOGGER.error("Something went wrong " + ar.cause().getMessage());
+                        fileCache.discard(cachedFile.path);
                     }
                 });
+            } else {
+                LOGGER.error("Cache file could not be created.", open.cause());
+                transfer(upstreamResponse, response, null, null, reply -> {});
+            }
+            upstreamResponse.resume();
+        });
+    }
+
+    /**
+     * Pumps the upstream body to the consumer and, if given, to a cache file.
+     * @param converter converter applied to the body sent to the consumer, may be null
+     * @param cacheFileHandler completed once the cache file is fully written and closed, failed otherwise
+     */
+    private void transfer(HttpClientResponse upstreamResponse, HttpServerResponse response, AsyncFile cacheFile, FormatConverter converter, Handler<AsyncResult<Void>> cacheFileHandler) {
+        new StreamTransfer(upstreamResponse, response, cacheFile, converter).start(writeQueueSize, transfer -> {
+            transferStatistics.record(transfer);
+            if (transfer.isCacheFileWritten()) {
+                cacheFileHandler.handle(Future.succeededFuture());
+            } else {
+                cacheFileHandler.handle(Future.failedFuture("Cache file could not be written."));
+            }
+        });
+    }
+
+    private void sendCachedFile(FileCache.CachedFile cachedFile, HttpServerResponse response) {
+        LOGGER.info("Serving cached file " + cachedFile.path);
+        response.setStatusCode(200);
+        putIfPresent(response, HttpHeaderNames.CONTENT_TYPE, cachedFile.contentType);
+        putIfPresent(response, HttpHeaderNames.CONTENT_DISPOSITION, cachedFile.contentDisposition);
+        putIfPresent(response, HttpHeaderNames.ETAG, cachedFile.etag);
+        putIfPresent(response, HttpHeaderNames.LAST_MODIFIED, cachedFile.lastModified);
+        if (!isCompressible(cachedFile.contentType)) {
+            response.putHeader(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+        }
+        response.sendFile(cachedFile.path, reply -> {
+            if (reply.failed()) {
+                LOGGER.error("Cached file could not be sent.", reply.cause());
+                if (!response.headWritten()) {
+                    response.setStatusCode(404).end();
+                } else {
+                    response.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Text formats are compressed by the HTTP server if the consumer accepts it, binary formats such as images or
+     * archives are usually compressed already and are sent as they are.
+     */
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        for (String compressible : COMPRESSIBLE_CONTENT_TYPES) {
+            if (compressible.endsWith("/") ? type.startsWith(compressible) : type.endsWith(compressible)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void transform(Handler<AsyncResult<String>> next, AsyncResult<String> result, String fileType){
-        if(fileType.equals("json")) {
-        //TODO File transformation magic?
-        } else {
-        //TODO File transformation magic?
+    private void putIfPresent(HttpServerResponse response, CharSequence header, String value) {
+        if (value != null) {
+            response.putHeader(header, value);
         }
-        next.handle(Future.succeededFuture(result.result()));
     }
 
-    private void replyFile(AsyncResult<String> result, Handler<AsyncResult<String>> resultHandler){
-        if (result.succeeded()) {
-            resultHandler.handle(Future.succeededFuture(result.result()));
+    /**
+     * Selects the conversion from the format of the distribution to the requested file type.
+     * @return converter, or null if the file is delivered as it is
+     */
+    private FormatConverter transform(String sourceFormat, FileType fileType){
+        String targetFormat = null;
+        if(FileType.JSON.equals(fileType)) {
+            targetFormat = FormatConverters.JSON;
+        } else if(FileType.XML.equals(fileType)) {
+            targetFormat = FormatConverters.XML;
+        } else if(FileType.TXT.equals(fileType)) {
+            targetFormat = FormatConverters.TXT;
         }
-        else {
-            LOGGER.error("FileContent could not be read.", result.cause());
-            resultHandler.handle(Future.failedFuture(result.cause()));
+        FormatConverter converter = FormatConverters.create(sourceFormat, targetFormat);
+        if (converter != null) {
+            LOGGER.info("Converting " + sourceFormat + " to " + targetFormat);
         }
+        return converter;
     }
 }
@@ -0,0 +1,85 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Circuit breaker and adaptive concurrency limit of the calls to one upstream host.
+ */
+public class HostGuard {
+
+    private final String host;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Counter rejections;
+    private final List<Meter> meters = new ArrayList<>();
+
+    HostGuard(String type, String host, CircuitBreaker circuitBreaker, AdaptiveConcurrencyLimiter limiter) {
+        this.host = host;
+        this.circuitBreaker = circuitBreaker;
+        this.limiter = limiter;
+        this.rejections = AdapterMetrics.counter(AdapterMetrics.CIRCUIT_BREAKER_REJECTIONS, "type", type, "host", host);
+        meters.add(rejections);
+        meters.add(AdapterMetrics.gauge(AdapterMetrics.HOST_CONCURRENCY_LIMIT, limiter, ConcurrencyLimiter::getLimit, "type", type, "host", host));
+        meters.add(AdapterMetrics.gauge(AdapterMetrics.HOST_CONCURRENCY_ACTIVE, limiter, ConcurrencyLimiter::getActive, "type", type, "host", host));
+        meters.add(AdapterMetrics.gauge(AdapterMetrics.HOST_CONCURRENCY_WAITING, limiter, ConcurrencyLimiter::getWaiting, "type", type, "host", host));
+        meters.add(AdapterMetrics.gauge(AdapterMetrics.CIRCUIT_BREAKER_STATE, circuitBreaker, cb -> cb.getState().ordinal(), "type", type, "host", host));
+    }
+
+    /**
+     * Runs the task as soon as the circuit breaker admits a call to the host and a slot is free. If the circuit is
+     * open, rejectHandler is called instead. The task runs on the calling context, also if it had to wait for a slot
+     * released on another event loop. It must call {@link #release(boolean)} exactly once when its call is done.
+     * @param task task making the call
+     * @param rejectHandler receives the failure of a rejected call
+     */
+    public void acquire(Handler<Void> task, Handler<CircuitOpenException> rejectHandler) {
+        if (!circuitBreaker.tryAcquire()) {
+            rejections.increment();
+            rejectHandler.handle(new CircuitOpenException(host));
+            return;
+        }
+        limiter.acquire(task);
+    }
+
+    /**
+     * @param success false if the host did not answer or answered with a server error
+     */
+    public void release(boolean success) {
+        if (success) {
+            circuitBreaker.success();
+        } else {
+            circuitBreaker.failure();
+        }
+        limiter.release(success);
+    }
+
+    /**
+     * Releases the slot of a task that did not make its call, without affecting circuit breaker and limit.
+     */
+    public void cancel() {
+        circuitBreaker.cancel();
+        limiter.release();
+    }
+
+    /**
+     * Removes the meters of the guard once it is no longer used. Calls still running finish normally.
+     */
+    void close() {
+        meters.forEach(AdapterMetrics::remove);
+    }
+
+    public JsonObject statistics() {
+        return new JsonObject()
+                .put("circuitBreaker", circuitBreaker.getState().name())
+                .put("failures", circuitBreaker.getFailures())
+                .put("limit", limiter.getLimit())
+                .put("active", limiter.getActive())
+                .put("waiting", limiter.getWaiting());
+    }
+}
@@ -0,0 +1,81 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.services.cache.ExpiringCache;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+
+/**
+ * Circuit breakers and adaptive concurrency limits per upstream host, shared by all verticle instances. There is one
+ * registry for CKAN portals and one for the hosts of the files. The number of hosts is bounded, the guard and the
+ * meters of the least recently used host are dropped when a new host exceeds the bound.
+ */
+public class HostGuards implements Shareable {
+
+    public static final String CKAN = "ckan";
+    public static final String FILE = "file";
+
+    private static final int DEFAULT_CIRCUIT_BREAKER_FAILURES = 5;
+    private static final long DEFAULT_CIRCUIT_BREAKER_RESET_TIMEOUT = 30000;
+    private static final int DEFAULT_CKAN_CONCURRENCY = 16;
+    private static final int DEFAULT_PROBE_CONCURRENCY = 4;
+    private static final int INITIAL_LIMIT = 4;
+    private static final int DEFAULT_HOST_GUARDS_SIZE = 1000;
+
+    private final String type;
+    private final int failureThreshold;
+    private final long resetTimeoutMillis;
+    private final int maxLimit;
+    private final ExpiringCache<String, HostGuard> guards;
+
+    private HostGuards(String type, int failureThreshold, long resetTimeoutMillis, int maxLimit, int maxHosts) {
+        this.type = type;
+        this.failureThreshold = failureThreshold;
+        this.resetTimeoutMillis = resetTimeoutMillis;
+        this.maxLimit = maxLimit;
+        this.guards = new ExpiringCache<>(maxHosts, 0, (host, guard) -> guard.close());
+    }
+
+    /**
+     * @param type {@link #CKAN} or {@link #FILE}
+     * @return the registry of the given type, created with the given config on first use
+     */
+    public static HostGuards get(Vertx vertx, String type, JsonObject config) {
+        LocalMap<String, HostGuards> map = vertx.sharedData().getLocalMap(Constants.HOST_GUARDS);
+        HostGuards guards = map.get(type);
+        if (guards != null) {
+            return guards;
+        }
+        guards = new HostGuards(type,
+                config.getInteger("CIRCUIT_BREAKER_FAILURES", DEFAULT_CIRCUIT_BREAKER_FAILURES),
+                config.getLong("CIRCUIT_BREAKER_RESET_TIMEOUT", DEFAULT_CIRCUIT_BREAKER_RESET_TIMEOUT),
+                CKAN.equals(type)
+                        ? config.getInteger("CKAN_CONCURRENCY", DEFAULT_CKAN_CONCURRENCY)
+                        : config.getInteger("PROBE_CONCURRENCY", DEFAULT_PROBE_CONCURRENCY),
+                Math.max(1, config.getInteger("HOST_GUARDS_SIZE", DEFAULT_HOST_GUARDS_SIZE)));
+        HostGuards existing = map.putIfAbsent(type, guards);
+        return existing != null ? existing : guards;
+    }
+
+    /**
+     * @param host host and port of the upstream
+     */
+    public synchronized HostGuard forHost(String host) {
+        HostGuard guard = guards.get(host);
+        if (guard == null) {
+            guard = new HostGuard(type, host,
+                    new CircuitBreaker(failureThreshold, resetTimeoutMillis),
+                    new AdaptiveConcurrencyLimiter(INITIAL_LIMIT, maxLimit));
+            guards.put(host, guard);
+        }
+        return guard;
+    }
+
+    public JsonObject statistics() {
+        JsonObject statistics = new JsonObject();
+        guards.forEach((host, guard) -> statistics.put(host, guard.statistics()));
+        return statistics;
+    }
+}
@@ -0,0 +1,129 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP clients shared by all services of a verticle, so CKAN API calls and file requests reuse warm connections.
+ * The API client requests compressed responses, the file client leaves response bodies untouched so they can be
+ * passed through to the consumer as they are.
+ */
+public class HttpClients {
+
+    private static final String CONTEXT_KEY = HttpClients.class.getName();
+
+    private static final int DEFAULT_MAX_POOL_SIZE = 20;
+    private static final int DEFAULT_HTTP2_MAX_POOL_SIZE = 1;
+    private static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 60;
+    private static final int DEFAULT_IDLE_TIMEOUT = 60;
+    private static final int DEFAULT_PIPELINING_LIMIT = 10;
+
+    private final WebClient apiClient;
+    private final HttpClient fileHttpClient;
+    private final WebClient fileClient;
+    private final JsonObject options;
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong createdConnections = new AtomicLong();
+
+    private HttpClients(Vertx vertx, JsonObject config) {
+        WebClientOptions apiOptions = new WebClientOptions(clientOptions(config));
+        apiOptions.setTryUseCompression(true);
+        HttpClient apiHttpClient = vertx.createHttpClient(apiOptions);
+        apiHttpClient.connectionHandler(this::trackConnection);
+        this.apiClient = WebClient.wrap(apiHttpClient, apiOptions);
+
+        HttpClientOptions fileOptions = clientOptions(config);
+        this.fileHttpClient = vertx.createHttpClient(fileOptions);
+        this.fileHttpClient.connectionHandler(this::trackConnection);
+        this.fileClient = WebClient.wrap(fileHttpClient, new WebClientOptions(fileOptions));
+
+        this.options = new JsonObject()
+                .put("maxPoolSize", fileOptions.getMaxPoolSize())
+                .put("http2MaxPoolSize", fileOptions.getHttp2MaxPoolSize())
+                .put("protocolVersion", fileOptions.getProtocolVersion().name())
+                .put("keepAlive", fileOptions.isKeepAlive())
+                .put("pipelining", fileOptions.isPipelining());
+    }
+
+    /**
+     * @param vertx current vertx instance
+     * @param config environment configuration, only used when the clients of the current context are created
+     * @return the clients of the current verticle context
+     */
+    public static HttpClients get(Vertx vertx, JsonObject config) {
+        Context context = vertx.getOrCreateContext();
+        HttpClients clients = context.get(CONTEXT_KEY);
+        if (clients == null) {
+            clients = new HttpClients(vertx, config);
+            context.put(CONTEXT_KEY, clients);
+        }
+        return clients;
+    }
+
+    /**
+     * @return client for CKAN API and other JSON requests
+     */
+    public WebClient apiClient() {
+        return apiClient;
+    }
+
+    /**
+     * @return client for requests to data hosts, sharing its connection pool with {@link #fileHttpClient()}
+     */
+    public WebClient fileClient() {
+        return fileClient;
+    }
+
+    /**
+     * @return client for streaming files from data hosts
+     */
+    public HttpClient fileHttpClient() {
+        return fileHttpClient;
+    }
+
+    public JsonObject statistics() {
+        return options.copy()
+                .put("openConnections", openConnections.get())
+                .put("createdConnections", createdConnections.get());
+    }
+
+    private void trackConnection(HttpConnection connection) {
+        openConnections.incrementAndGet();
+        createdConnections.incrementAndGet();
+        connection.closeHandler(v -> openConnections.decrementAndGet());
+    }
+
+    private static HttpClientOptions clientOptions(JsonObject config) {
+        HttpClientOptions options = new HttpClientOptions()
+                .setTrustAll(true)
+                .setMaxPoolSize(config.getInteger("HTTP_MAX_POOL_SIZE", DEFAULT_MAX_POOL_SIZE))
+                .setKeepAlive(config.getBoolean("HTTP_KEEP_ALIVE", true))
+                .setKeepAliveTimeout(config.getInteger("HTTP_KEEP_ALIVE_TIMEOUT", DEFAULT_KEEP_ALIVE_TIMEOUT))
+                .setIdleTimeout(config.getInteger("HTTP_IDLE_TIMEOUT", DEFAULT_IDLE_TIMEOUT))
+                .setPipelining(config.getBoolean("HTTP_PIPELINING", false))
+                .setPipeliningLimit(config.getInteger("HTTP_PIPELINING_LIMIT", DEFAULT_PIPELINING_LIMIT));
+        if (config.containsKey("HTTP_RECEIVE_BUFFER_SIZE")) {
+            options.setReceiveBufferSize(config.getInteger("HTTP_RECEIVE_BUFFER_SIZE"));
+        }
+        if (config.getBoolean("HTTP_2", false)) {
+            // TLS connections negotiate the protocol with ALPN, plain connections start as HTTP/1.1 with an h2c upgrade
+            // request so that hosts without HTTP/2 support keep answering in HTTP/1.1
+            options.setProtocolVersion(HttpVersion.HTTP_2)
+                    .setUseAlpn(true)
+                    .setHttp2ClearTextUpgrade(true)
+                    .setHttp2MaxPoolSize(config.getInteger("HTTP_2_MAX_POOL_SIZE", DEFAULT_HTTP2_MAX_POOL_SIZE));
+        }
+        return options;
+    }
+}
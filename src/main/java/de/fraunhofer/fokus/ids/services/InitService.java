@@ -11,16 +11,46 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.web.client.WebClient;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
 public class InitService {
     private final Logger LOGGER = LoggerFactory.getLogger(InitService.class.getName());
 
+    /**
+     * Schema migrations, the statements at index i migrate the schema from version i to version i+1.
+     */
+    private static final List<List<String>> MIGRATIONS = Arrays.asList(
+            Arrays.asList(
+                    "CREATE TABLE IF NOT EXISTS accessinformation (created_at TEXT, updated_at TEXT, distributionid TEXT, datasetid TEXT, url TEXT)",
+                    "CREATE TABLE IF NOT EXISTS harvest (sourceid TEXT PRIMARY KEY, last_modified TEXT)"),
+            Arrays.asList(
+                    "DROP TABLE IF EXISTS accessinformation_v2",
+                    "CREATE TABLE accessinformation_v2 (created_at TEXT, updated_at TEXT, distributionid TEXT PRIMARY KEY, datasetid TEXT NOT NULL, url TEXT NOT NULL)",
+                    "INSERT INTO accessinformation_v2 SELECT created_at, updated_at, distributionid, datasetid, url FROM accessinformation " +
+                            "WHERE distributionid IS NOT NULL AND datasetid IS NOT NULL AND url IS NOT NULL ON CONFLICT DO NOTHING",
+                    "DROP TABLE accessinformation",
+                    "ALTER TABLE accessinformation_v2 RENAME TO accessinformation",
+                    "CREATE INDEX IF NOT EXISTS accessinformation_datasetid ON accessinformation (datasetid)"),
+            Arrays.asList(
+                    "CREATE TABLE IF NOT EXISTS harvest_package (sourceid TEXT NOT NULL, packageid TEXT NOT NULL, datasetid TEXT NOT NULL, PRIMARY KEY (sourceid, packageid))"));
+
+    private static final int REGISTRATION_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF = 1000;
+    private static final long MAX_BACKOFF = 30000;
+    /**
+     * Send timeout of the migration calls, which may wait for the migration lock held by another adapter.
+     */
+    private static final long MIGRATION_TIMEOUT = 600000;
+
     private DatabaseService databaseService;
 
     public InitService(Vertx vertx, Handler<AsyncResult<Void>> resultHandler){
-        this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+        this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE, MIGRATION_TIMEOUT);
 
         Promise<Void> dbPromise = Promise.promise();
         Future<Void> dbFuture = dbPromise.future();
@@ -40,13 +70,52 @@ public class InitService {
         });
     }
 
+    /**
+     * Brings the database schema to the latest version. Every migration is executed in its own transaction
+     * together with the update of the schema version, so an interrupted migration is repeated on the next start.
+     * Adapters starting at the same time may both try to create schema_version, so a failed creation is only fatal
+     * if the table cannot be read afterwards.
+     */
     private void initDB(Handler<AsyncResult<Void>> resultHandler){
-        databaseService.update("CREATE TABLE IF NOT EXISTS accessinformation (created_at, updated_at, distributionid, datasetid, url)", new JsonArray(), reply -> {
+        databaseService.batch(Arrays.asList(
+                "CREATE TABLE IF NOT EXISTS schema_version (version INTEGER PRIMARY KEY)",
+                "CREATE UNIQUE INDEX IF NOT EXISTS schema_version_version ON schema_version (version)"), reply -> {
+            if(reply.failed()){
+                LOGGER.warn("Table creation failed, it may have been created concurrently. " + reply.cause().getMessage());
+            }
+            databaseService.query("SELECT MAX(version) AS version FROM schema_version", new JsonArray(), reply2 -> {
+                if(reply2.succeeded()){
+                    Integer version = reply2.result().isEmpty() ? null : reply2.result().get(0).getInteger("version");
+                    migrate(version == null ? 0 : version, resultHandler);
+                }
+                else{
+                    LOGGER.error("Schema version could not be retrieved.", reply2.cause());
+                    resultHandler.handle(Future.failedFuture(reply2.cause()));
+                }
+            });
+        });
+    }
+
+    /**
+     * The database service re-checks the version within the migration transaction, so a migration another adapter
+     * completed in the meantime is skipped.
+     */
+    private void migrate(int version, Handler<AsyncResult<Void>> resultHandler){
+        if(version >= MIGRATIONS.size()){
+            LOGGER.info("Database schema is at version " + version + ".");
+            resultHandler.handle(Future.succeededFuture());
+            return;
+        }
+        int nextVersion = version + 1;
+        databaseService.migrate(nextVersion, MIGRATIONS.get(version), reply -> {
             if(reply.succeeded()){
-                resultHandler.handle(Future.succeededFuture());
+                LOGGER.info(reply.result()
+                        ? "Database schema migrated to version " + nextVersion + "."
+                        : "Database schema was already migrated to version " + nextVersion + ".");
+                migrate(nextVersion, resultHandler);
             }
             else{
-                LOGGER.error("Table creation failed.", reply.cause());
+                LOGGER.error("Migration to schema version " + nextVersion + " failed.", reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause()));
             }
         });
@@ -73,8 +142,10 @@ public class InitService {
                             .put("address", new JsonObject()
                                     .put("host", ar.result().getString("ROUTE_ALIAS"))
                                     .put("port", 8080));
-                    WebClient webClient = WebClient.create(vertx);
-                    establishConnection(3, webClient, ar.result().getInteger("CONFIG_MANAGER_PORT"), ar.result().getString("CONFIG_MANAGER_HOST"), "/register", registration, resultHandler);
+                    WebClient webClient = HttpClients.get(vertx, ar.result()).apiClient();
+                    establishConnection(vertx, REGISTRATION_ATTEMPTS, INITIAL_BACKOFF, webClient, ar.result().getInteger("CONFIG_MANAGER_PORT"), ar.result().getString("CONFIG_MANAGER_HOST"), "/register", registration, resultHandler);
+                } else {
+                    resultHandler.handle(Future.succeededFuture());
                 }
             } else {
                 LOGGER.error(ar.cause());
@@ -83,9 +154,15 @@ public class InitService {
         });
     }
 
-    private void establishConnection(int i, WebClient webClient, int port, String host, String path, JsonObject registration, Handler<AsyncResult<Void>> resultHandler) {
+    /**
+     * Posts the registration, failed attempts are repeated after an exponentially growing delay with jitter.
+     * @param i remaining attempts
+     * @param backoff delay in ms before the next attempt, the actual delay is between half and all of it
+     */
+    private void establishConnection(Vertx vertx, int i, long backoff, WebClient webClient, int port, String host, String path, JsonObject registration, Handler<AsyncResult<Void>> resultHandler) {
         if (i == 0){
             resultHandler.handle(Future.failedFuture("Connection refused"));
+            return;
         }
         webClient
                 .post(port, host, path)
@@ -93,8 +170,14 @@ public class InitService {
                     if(ar.succeeded()){
                         resultHandler.handle(Future.succeededFuture());
                     }
+                    else if (i > 1) {
+                        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                        LOGGER.info("Registration failed, retrying in " + delay + " ms.");
+                        vertx.setTimer(delay, t -> establishConnection(vertx, i-1, Math.min(backoff * 2, MAX_BACKOFF), webClient, port, host, path, registration, resultHandler));
+                    }
                     else{
-                        establishConnection(i-1,webClient, port, host, path, registration, resultHandler);
+                        LOGGER.error("Registration failed.", ar.cause());
+                        resultHandler.handle(Future.failedFuture("Connection refused"));
                     }
                 });
 
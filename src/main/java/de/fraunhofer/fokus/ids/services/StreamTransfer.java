@@ -0,0 +1,190 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.services.conversion.FormatConverter;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pumps an upstream response body to the consumer and optionally to a cache file. The upstream is paused while the
+ * consumer or the file cannot take more data and the consumer connection is reset if the upstream fails mid-transfer.
+ * If the transfer fails on this side, e.g. in the converter, the upstream request is reset, so the upstream connection
+ * is not kept busy by a body nobody reads.
+ * The transfer records its size and duration as well as the time spent waiting for the consumer (client stall) and
+ * for the upstream (upstream wait), which shows which side limits the throughput.
+ */
+public class StreamTransfer {
+    private final Logger LOGGER = LoggerFactory.getLogger(StreamTransfer.class.getName());
+
+    private final HttpClientResponse upstreamResponse;
+    private final HttpServerResponse response;
+    private final AsyncFile cacheFile;
+    private final FormatConverter converter;
+
+    private final long startedAt = System.nanoTime();
+    private long endedAt;
+    private long bytes;
+    private long clientStallNanos;
+    private long upstreamWaitNanos;
+    private long pausedAt = -1;
+    private long waitingSince = startedAt;
+    private boolean cacheFileFailed;
+    private boolean cacheFileWritten;
+    private boolean failed;
+    private boolean completed;
+
+    /**
+     * @param upstreamResponse response to read the body from
+     * @param response consumer response
+     * @param cacheFile file the unconverted body is additionally written to, may be null
+     * @param converter converter applied to the body sent to the consumer, may be null
+     */
+    public StreamTransfer(HttpClientResponse upstreamResponse, HttpServerResponse response, AsyncFile cacheFile, FormatConverter converter) {
+        this.upstreamResponse = upstreamResponse;
+        this.response = response;
+        this.cacheFile = cacheFile;
+        this.converter = converter;
+    }
+
+    /**
+     * Starts the transfer.
+     * @param writeQueueSize maximum number of bytes queued for the consumer before the upstream is paused
+     * @param endHandler called once when the transfer ended or failed, after the cache file has been closed
+     */
+    public void start(int writeQueueSize, Handler<StreamTransfer> endHandler) {
+        response.setWriteQueueMaxSize(writeQueueSize);
+        if (cacheFile != null) {
+            cacheFile.setWriteQueueMaxSize(writeQueueSize);
+            cacheFile.exceptionHandler(t -> {
+                LOGGER.error("Cache file could not be written.", t);
+                cacheFileFailed = true;
+            });
+            cacheFile.drainHandler(v -> resumeIfWritable());
+        }
+        response.drainHandler(v -> resumeIfWritable());
+        upstreamResponse.handler(buffer -> {
+            long now = System.nanoTime();
+            upstreamWaitNanos += now - waitingSince;
+            bytes += buffer.length();
+            Buffer output;
+            try {
+                output = converter == null ? buffer : converter.convert(buffer);
+            } catch (RuntimeException e) {
+                fail(e, endHandler);
+                return;
+            }
+            if (output.length() > 0) {
+                response.write(output);
+            }
+            if (cacheFile != null && !cacheFileFailed) {
+                cacheFile.write(buffer);
+            }
+            if (isWriteQueueFull()) {
+                pausedAt = now;
+                upstreamResponse.pause();
+            } else {
+                waitingSince = now;
+            }
+        });
+        upstreamResponse.exceptionHandler(t -> fail(t, endHandler));
+        upstreamResponse.endHandler(v -> {
+            if (completed) {
+                return;
+            }
+            if (converter != null) {
+                Buffer output;
+                try {
+                    output = converter.end();
+                } catch (RuntimeException e) {
+                    fail(e, endHandler);
+                    return;
+                }
+                response.end(output);
+            } else {
+                response.end();
+            }
+            complete(endHandler);
+        });
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((endedAt == 0 ? System.nanoTime() : endedAt) - startedAt);
+    }
+
+    public long getClientStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(clientStallNanos);
+    }
+
+    public long getUpstreamWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(upstreamWaitNanos);
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return true if the complete body was written to the cache file and the file was closed
+     */
+    public boolean isCacheFileWritten() {
+        return cacheFileWritten;
+    }
+
+    private boolean isWriteQueueFull() {
+        return response.writeQueueFull() || (cacheFile != null && !cacheFileFailed && cacheFile.writeQueueFull());
+    }
+
+    private void resumeIfWritable() {
+        if (pausedAt >= 0 && !isWriteQueueFull()) {
+            long now = System.nanoTime();
+            clientStallNanos += now - pausedAt;
+            pausedAt = -1;
+            waitingSince = now;
+            upstreamResponse.resume();
+        }
+    }
+
+    private void fail(Throwable t, Handler<StreamTransfer> endHandler) {
+        if (completed) {
+            return;
+        }
+        LOGGER.error("Transfer failed after " + bytes + " bytes: " + t.getMessage());
+        failed = true;
+        upstreamResponse.handler(null);
+        upstreamResponse.request().reset();
+        if (!response.headWritten()) {
+            response.setStatusCode(502).end();
+        } else {
+            response.reset();
+        }
+        complete(endHandler);
+    }
+
+    private void complete(Handler<StreamTransfer> endHandler) {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        endedAt = System.nanoTime();
+        LOGGER.info("Transferred " + bytes + " bytes in " + getDurationMillis() + " ms (client stall "
+                + getClientStallMillis() + " ms, upstream wait " + getUpstreamWaitMillis() + " ms).");
+        if (cacheFile == null) {
+            endHandler.handle(this);
+            return;
+        }
+        cacheFile.close(closed -> {
+            cacheFileWritten = !failed && closed.succeeded() && !cacheFileFailed;
+            endHandler.handle(this);
+        });
+    }
+}
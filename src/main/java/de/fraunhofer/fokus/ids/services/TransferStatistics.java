@@ -0,0 +1,51 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Aggregated statistics of all file transfers of a Vert.x instance.
+ */
+public class TransferStatistics implements Shareable {
+
+    private static final String KEY = "statistics";
+
+    private long transfers;
+    private long failed;
+    private long bytes;
+    private long durationMillis;
+    private long clientStallMillis;
+    private long upstreamWaitMillis;
+
+    public static TransferStatistics get(Vertx vertx) {
+        LocalMap<String, TransferStatistics> map = vertx.sharedData().getLocalMap(Constants.TRANSFER_STATISTICS);
+        TransferStatistics statistics = new TransferStatistics();
+        TransferStatistics existing = map.putIfAbsent(KEY, statistics);
+        return existing != null ? existing : statistics;
+    }
+
+    public synchronized void record(StreamTransfer transfer) {
+        AdapterMetrics.recordTransfer(transfer);
+        transfers++;
+        if (transfer.isFailed()) {
+            failed++;
+        }
+        bytes += transfer.getBytes();
+        durationMillis += transfer.getDurationMillis();
+        clientStallMillis += transfer.getClientStallMillis();
+        upstreamWaitMillis += transfer.getUpstreamWaitMillis();
+    }
+
+    public synchronized JsonObject statistics() {
+        return new JsonObject()
+                .put("transfers", transfers)
+                .put("failed", failed)
+                .put("bytes", bytes)
+                .put("durationMillis", durationMillis)
+                .put("clientStallMillis", clientStallMillis)
+                .put("upstreamWaitMillis", upstreamWaitMillis)
+                .put("bytesPerSecond", durationMillis == 0 ? 0.0 : bytes * 1000.0 / durationMillis);
+    }
+}
@@ -0,0 +1,70 @@
+package de.fraunhofer.fokus.ids.services.cache;
+
+import de.fraunhofer.fokus.ids.services.Constants;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Cache of the upstream URL of each distribution, shared by all services of a Vert.x instance.
+ * Entries are added when access information is saved and removed when the owning dataset is deleted. A deletion
+ * through another adapter instance sharing the database is not seen, so entries also expire after a time to live.
+ */
+public class AccessInformationCache implements Shareable {
+
+    private static final String KEY = "cache";
+    private static final int DEFAULT_SIZE = 10000;
+    private static final long DEFAULT_TTL_SECONDS = 300;
+
+    private final ExpiringCache<String, AccessInformation> cache;
+
+    private AccessInformationCache(int maxSize, long ttlMillis) {
+        this.cache = new ExpiringCache<>(maxSize, ttlMillis);
+    }
+
+    /**
+     * @param vertx current vertx instance
+     * @param config environment configuration, only used if the cache does not exist yet
+     * @return the cache shared within the given vertx instance
+     */
+    public static AccessInformationCache get(Vertx vertx, JsonObject config) {
+        LocalMap<String, AccessInformationCache> map = vertx.sharedData().getLocalMap(Constants.ACCESS_INFORMATION_CACHE);
+        AccessInformationCache existing = map.get(KEY);
+        if (existing != null) {
+            return existing;
+        }
+        AccessInformationCache cache = new AccessInformationCache(
+                config.getInteger("ACCESS_INFORMATION_CACHE_SIZE", DEFAULT_SIZE),
+                config.getLong("ACCESS_INFORMATION_CACHE_TTL", DEFAULT_TTL_SECONDS) * 1000);
+        existing = map.putIfAbsent(KEY, cache);
+        return existing != null ? existing : cache;
+    }
+
+    public String getUrl(String distributionId) {
+        AccessInformation accessInformation = cache.get(distributionId);
+        return accessInformation == null ? null : accessInformation.url;
+    }
+
+    public void put(String distributionId, String datasetId, String url) {
+        cache.put(distributionId, new AccessInformation(datasetId, url));
+    }
+
+    public void removeDataset(String datasetId) {
+        cache.removeIf((distributionId, accessInformation) -> datasetId.equals(accessInformation.datasetId));
+    }
+
+    public JsonObject statistics() {
+        return cache.statistics();
+    }
+
+    private static class AccessInformation {
+        private final String datasetId;
+        private final String url;
+
+        private AccessInformation(String datasetId, String url) {
+            this.datasetId = datasetId;
+            this.url = url;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package de.fraunhofer.fokus.ids.services.cache;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * Size bounded in-memory cache with least recently used eviction and an optional time to live per entry.
+ * All operations are synchronized, so a single instance may be shared between verticle instances.
+ */
+public class ExpiringCache<K, V> implements Shareable {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final BiConsumer<K, V> evictionListener;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxSize maximum number of entries, 0 disables the cache
+     * @param ttlMillis time to live of an entry in milliseconds, 0 or less disables expiry
+     */
+    public ExpiringCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, (key, value) -> {});
+    }
+
+    /**
+     * @param maxSize maximum number of entries, 0 disables the cache
+     * @param ttlMillis time to live of an entry in milliseconds, 0 or less disables expiry
+     * @param evictionListener called with every entry removed because the cache is full or the entry expired
+     */
+    public ExpiringCache(int maxSize, long ttlMillis, BiConsumer<K, V> evictionListener) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlMillis = ttlMillis;
+        this.evictionListener = evictionListener;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringCache.this.maxSize) {
+                    evictions++;
+                    evictionListener.accept(eldest.getKey(), eldest.getValue().value);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.isExpired()) {
+            entries.remove(key);
+            evictionListener.accept(key, entry.value);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (maxSize == 0) {
+            return;
+        }
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Removes all entries matching the predicate.
+     * @return number of removed entries
+     */
+    public synchronized int removeIf(BiPredicate<K, V> predicate) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Calls the action with every entry, without affecting their recency or expiry.
+     */
+    public synchronized void forEach(BiConsumer<K, V> action) {
+        entries.forEach((key, entry) -> action.accept(key, entry.value));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return current size and hit/miss/eviction counters of the cache
+     */
+    public synchronized JsonObject statistics() {
+        long requests = hits + misses;
+        return new JsonObject()
+                .put("size", entries.size())
+                .put("maxSize", maxSize)
+                .put("ttlMillis", ttlMillis)
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions)
+                .put("hitRatio", requests == 0 ? 0.0 : (double) hits / requests);
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
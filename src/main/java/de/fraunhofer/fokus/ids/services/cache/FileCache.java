@@ -0,0 +1,183 @@
+package de.fraunhofer.fokus.ids.services.cache;
+
+import de.fraunhofer.fokus.ids.services.Constants;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Disk cache of proxied files below the repository directory, shared by all services of a Vert.x instance.
+ * Files are stored per distribution together with the upstream validators (ETag, Last-Modified) they were
+ * downloaded with and evicted least recently used first once the total size exceeds the configured limit.
+ * The index is kept in memory, so the cache directory is cleared on startup.
+ */
+public class FileCache implements Shareable {
+    private final Logger LOGGER = LoggerFactory.getLogger(FileCache.class.getName());
+
+    private static final String KEY = "cache";
+    private static final String DIRECTORY = "filecache";
+
+    private final Vertx vertx;
+    private final String directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile boolean ready;
+
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private FileCache(Vertx vertx, String repository, long maxBytes) {
+        this.vertx = vertx;
+        this.directory = repository + DIRECTORY;
+        this.maxBytes = maxBytes;
+    }
+
+    private void init() {
+        if (maxBytes > 0) {
+            vertx.fileSystem().deleteRecursive(directory, true, delete ->
+                    vertx.fileSystem().mkdirs(directory, mkdirs -> {
+                        if (mkdirs.succeeded()) {
+                            LOGGER.info("File cache initialized in " + directory);
+                            ready = true;
+                        } else {
+                            LOGGER.error("File cache directory could not be created.", mkdirs.cause());
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * @param vertx current vertx instance
+     * @param config environment configuration, only used if the cache does not exist yet
+     * @return the cache shared within the given vertx instance
+     */
+    public static FileCache get(Vertx vertx, JsonObject config) {
+        LocalMap<String, FileCache> map = vertx.sharedData().getLocalMap(Constants.FILE_CACHE);
+        FileCache existing = map.get(KEY);
+        if (existing != null) {
+            return existing;
+        }
+        FileCache cache = new FileCache(vertx,
+                config.getString("REPOSITORY", ""),
+                config.getLong("FILE_CACHE_SIZE", 0L));
+        existing = map.putIfAbsent(KEY, cache);
+        if (existing != null) {
+            return existing;
+        }
+        cache.init();
+        return cache;
+    }
+
+    public boolean isEnabled() {
+        return ready;
+    }
+
+    /**
+     * @param size size of a file in bytes
+     * @return true if a file of the given size may be cached
+     */
+    public boolean accepts(long size) {
+        return ready && size >= 0 && size <= maxBytes;
+    }
+
+    public synchronized CachedFile get(String distributionId) {
+        CachedFile file = entries.get(distributionId);
+        if (file == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return file;
+    }
+
+    /**
+     * @return path for a new cache file
+     */
+    public String newFilePath() {
+        return directory + "/" + UUID.randomUUID().toString();
+    }
+
+    /**
+     * Adds or replaces the file of a distribution and evicts least recently used files until the cache fits its limit.
+     */
+    public synchronized void put(String distributionId, CachedFile file) {
+        CachedFile replaced = entries.put(distributionId, file);
+        if (replaced != null) {
+            totalBytes -= replaced.size;
+            delete(replaced);
+        }
+        totalBytes += file.size;
+        Iterator<Map.Entry<String, CachedFile>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CachedFile evicted = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= evicted.size;
+            evictions++;
+            delete(evicted);
+        }
+    }
+
+    public synchronized void remove(String distributionId) {
+        CachedFile removed = entries.remove(distributionId);
+        if (removed != null) {
+            totalBytes -= removed.size;
+            delete(removed);
+        }
+    }
+
+    /**
+     * Deletes a file that was written for the cache but not added to it.
+     */
+    public void discard(String path) {
+        vertx.fileSystem().delete(path, reply -> {});
+    }
+
+    public synchronized JsonObject statistics() {
+        long requests = hits + misses;
+        return new JsonObject()
+                .put("enabled", ready)
+                .put("files", entries.size())
+                .put("bytes", totalBytes)
+                .put("maxBytes", maxBytes)
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions)
+                .put("hitRatio", requests == 0 ? 0.0 : (double) hits / requests);
+    }
+
+    private void delete(CachedFile file) {
+        vertx.fileSystem().delete(file.path, reply -> {
+            if (reply.failed()) {
+                LOGGER.error("Cache file " + file.path + " could not be deleted.", reply.cause());
+            }
+        });
+    }
+
+    public static class CachedFile {
+        public final String path;
+        public final long size;
+        public final String etag;
+        public final String lastModified;
+        public final String contentType;
+        public final String contentDisposition;
+
+        public CachedFile(String path, long size, String etag, String lastModified, String contentType, String contentDisposition) {
+            this.path = path;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.contentDisposition = contentDisposition;
+        }
+    }
+}
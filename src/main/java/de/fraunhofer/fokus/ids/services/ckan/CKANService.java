@@ -1,5 +1,9 @@
 package de.fraunhofer.fokus.ids.services.ckan;
 
+import de.fraunhofer.fokus.ids.services.Constants;
+import de.fraunhofer.fokus.ids.services.HostGuards;
+import de.fraunhofer.fokus.ids.services.HttpClients;
+import de.fraunhofer.fokus.ids.services.cache.ExpiringCache;
 import io.vertx.codegen.annotations.Fluent;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
@@ -8,7 +12,6 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.WebClient;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
@@ -16,17 +19,50 @@ import io.vertx.ext.web.client.WebClient;
 @VertxGen
 public interface CKANService {
 
+    /**
+     * @param timeout timeout of the CKAN request in ms, 0 for the configured CKAN_TIMEOUT
+     */
     @Fluent
-    CKANService query(JsonObject dataSourceJson, String resourceID, String resourceAPIPath, Handler<AsyncResult<JsonObject>> resultHandler);
+    CKANService query(String ckanApiUrl, String resourceID, String resourceAPIPath, long timeout, Handler<AsyncResult<JsonObject>> resultHandler);
 
+    /**
+     * @param timeout timeout of the CKAN request in ms, 0 for the configured CKAN_TIMEOUT
+     */
+    @Fluent
+    CKANService search(String ckanApiUrl, JsonObject params, long timeout, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    @Fluent
+    CKANService statistics(Handler<AsyncResult<JsonObject>> resultHandler);
+
+    @GenIgnore
+    static CKANService create(HttpClients httpClients, ExpiringCache<String, JsonObject> cache, HostGuards hostGuards, long defaultTimeout, Handler<AsyncResult<CKANService>> readyHandler) {
+        return new CKANServiceImpl(httpClients, cache, hostGuards, defaultTimeout, readyHandler);
+    }
+
+    /**
+     * Returns a service instance running on the calling verticle context, which is called directly instead of via the
+     * event bus, unless CKAN_SERVICE_LOCAL is disabled. Local instances share the response cache with the
+     * CKANServiceVerticle instances. Results of local calls are not copied and must not be modified by the caller.
+     */
     @GenIgnore
-    static CKANService create(WebClient webClient, Handler<AsyncResult<CKANService>> readyHandler) {
-        return new CKANServiceImpl(webClient, readyHandler);
+    static CKANService get(Vertx vertx, JsonObject config) {
+        if (config.getBoolean("CKAN_SERVICE_LOCAL", true)) {
+            return CKANServiceImpl.forContext(vertx, config);
+        }
+        return createProxy(vertx, Constants.CKAN_SERVICE, config.getLong("SERVICE_TIMEOUT", Constants.DEFAULT_SERVICE_TIMEOUT));
     }
 
     @GenIgnore
     static CKANService createProxy(Vertx vertx, String address) {
-        return new CKANServiceVertxEBProxy(vertx, address);
+        return createProxy(vertx, address, Constants.DEFAULT_SERVICE_TIMEOUT);
+    }
+
+    /**
+     * @param sendTimeout event bus send timeout in ms, calls with their own timeout use that as send timeout instead
+     */
+    @GenIgnore
+    static CKANService createProxy(Vertx vertx, String address, long sendTimeout) {
+        return new TimedCKANService(vertx, address, sendTimeout);
     }
 
 }
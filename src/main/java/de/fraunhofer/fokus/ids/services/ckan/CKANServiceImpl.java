@@ -1,65 +1,206 @@
 package de.fraunhofer.fokus.ids.services.ckan;
 
-import de.fraunhofer.fokus.ids.persistence.entities.DataSource;
-import de.fraunhofer.fokus.ids.persistence.entities.serialization.DataSourceSerializer;
+import de.fraunhofer.fokus.ids.services.AdapterMetrics;
+import de.fraunhofer.fokus.ids.services.HostGuard;
+import de.fraunhofer.fokus.ids.services.HostGuards;
+import de.fraunhofer.fokus.ids.services.HttpClients;
+import de.fraunhofer.fokus.ids.services.cache.ExpiringCache;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.json.Json;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
 public class CKANServiceImpl implements CKANService {
     private final Logger LOGGER = LoggerFactory.getLogger(CKANServiceImpl.class.getName());
+    private static final String CONTEXT_KEY = CKANServiceImpl.class.getName();
+    static final long DEFAULT_TIMEOUT = 10000;
+    private HttpClients httpClients;
     private WebClient webClient;
+    private ExpiringCache<String, JsonObject> cache;
+    private HostGuards hostGuards;
+    private Map<String, List<Handler<AsyncResult<JsonObject>>>> inFlight = new HashMap<>();
+    private long sharedRequests;
+    private long defaultTimeout;
 
-    public CKANServiceImpl(WebClient webClient, Handler<AsyncResult<CKANService>> readyHandler) {
-        this.webClient = webClient;
+    public CKANServiceImpl(HttpClients httpClients, ExpiringCache<String, JsonObject> cache, HostGuards hostGuards, long defaultTimeout, Handler<AsyncResult<CKANService>> readyHandler) {
+        this(httpClients, cache, hostGuards, defaultTimeout);
         readyHandler.handle(Future.succeededFuture(this));
     }
 
+    private CKANServiceImpl(HttpClients httpClients, ExpiringCache<String, JsonObject> cache, HostGuards hostGuards, long defaultTimeout) {
+        this.httpClients = httpClients;
+        this.webClient = httpClients.apiClient();
+        this.cache = cache;
+        this.hostGuards = hostGuards;
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * @return the service instance of the calling verticle context, created on first use
+     */
+    static CKANService forContext(Vertx vertx, JsonObject config) {
+        Context context = vertx.getOrCreateContext();
+        CKANService service = context.get(CONTEXT_KEY);
+        if (service == null) {
+            service = new CKANServiceImpl(HttpClients.get(vertx, config), CKANServiceVerticle.sharedCache(vertx, config),
+                    HostGuards.get(vertx, HostGuards.CKAN, config), config.getLong("CKAN_TIMEOUT", DEFAULT_TIMEOUT));
+            context.put(CONTEXT_KEY, service);
+        }
+        return service;
+    }
+
     @Override
-    public CKANService query(JsonObject dataSourceJson, String resourceID, String resourceAPIPath, Handler<AsyncResult<JsonObject>> resultHandler) {
-        LOGGER.info("Querying CKAN.");
-        DataSource dataSource = null;
+    public CKANService query(String ckanApiUrl, String resourceID, String resourceAPIPath, long timeout, Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (ckanApiUrl == null) {
+            resultHandler.handle(Future.failedFuture("No CKAN API URL specified."));
+            return this;
+        }
+        String url = ckanApiUrl.endsWith("/") ? ckanApiUrl.substring(0,ckanApiUrl.length()-1):ckanApiUrl;
+        String key = url + resourceAPIPath + resourceID;
+
+        JsonObject cached = cache.get(key);
+        if (cached != null) {
+            LOGGER.debug("CKAN cache hit for " + key);
+            resultHandler.handle(Future.succeededFuture(cached));
+            return this;
+        }
+        List<Handler<AsyncResult<JsonObject>>> waiting = inFlight.get(key);
+        if (waiting != null) {
+            sharedRequests++;
+            waiting.add(resultHandler);
+            return this;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(resultHandler);
+        inFlight.put(key, waiting);
+        fetch(url, resourceID, resourceAPIPath, timeout, reply -> {
+            if (reply.succeeded()) {
+                cache.put(key, reply.result());
+            }
+            for (Handler<AsyncResult<JsonObject>> handler : inFlight.remove(key)) {
+                handler.handle(reply);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Performs an uncached package_search, each entry of params is added as query parameter.
+     */
+    @Override
+    public CKANService search(String ckanApiUrl, JsonObject params, long timeout, Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (ckanApiUrl == null) {
+            resultHandler.handle(Future.failedFuture("No CKAN API URL specified."));
+            return this;
+        }
+        String url = ckanApiUrl.endsWith("/") ? ckanApiUrl.substring(0,ckanApiUrl.length()-1):ckanApiUrl;
         try {
-            dataSource = DataSourceSerializer.deserialize(dataSourceJson);
-        } catch (ParseException e) {
+            URL dsUrl = new URL(url + "/package_search");
+            LOGGER.info("Searching "+dsUrl.toString());
+            HttpRequest<Buffer> request = webClient.getAbs(dsUrl.toString()).timeout(timeout(timeout));
+            params.forEach(e -> request.addQueryParam(e.getKey(), String.valueOf(e.getValue())));
+            Handler<AsyncResult<JsonObject>> timedHandler = AdapterMetrics.timed(AdapterMetrics.CKAN_REQUESTS, resultHandler,
+                    "host", dsUrl.getHost(), "action", "package_search");
+            send(request, dsUrl, timedHandler);
+        } catch (MalformedURLException e) {
             LOGGER.error(e);
-            resultHandler.handle(Future.failedFuture(e));
+            resultHandler.handle(Future.failedFuture(e.getMessage()));
         }
+        return this;
+    }
+
+    @Override
+    public CKANService statistics(Handler<AsyncResult<JsonObject>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(cache.statistics()
+                .put("inFlight", inFlight.size())
+                .put("sharedRequests", sharedRequests)
+                .put("hosts", hostGuards.statistics())
+                .put("httpClients", httpClients.statistics())));
+        return this;
+    }
+
+    /**
+     * Requests a CKAN API path. If several callers share the request, it uses the timeout of the first one.
+     */
+    private void fetch(String url, String resourceID, String resourceAPIPath, long timeout, Handler<AsyncResult<JsonObject>> resultHandler) {
+        LOGGER.info("Querying CKAN.");
         try {
-            String url = dataSource.getData().getString("ckanApiUrl");
-            url = url.endsWith("/") ? url.substring(0,url.length()-1):url;
             URL dsUrl = new URL(url + resourceAPIPath + resourceID);
             LOGGER.info("Querying "+dsUrl.toString());
-            webClient
-                    .getAbs(dsUrl.toString())
-                    .send(ar -> {
-                        if (ar.succeeded()) {
-                            if((ar.result().bodyAsJsonObject().getBoolean("success"))){
-                                resultHandler.handle(Future.succeededFuture(ar.result().bodyAsJsonObject().getJsonObject("result").put("originalURL", dsUrl.toString())));
-                            } else {
-                                resultHandler.handle(Future.failedFuture(""));
-                            }
-                        } else {
-                            LOGGER.error("No response from CKAN.", ar.cause());
-                            resultHandler.handle(Future.failedFuture(ar.cause()));
-                        }
-                    });
+            Handler<AsyncResult<JsonObject>> timedHandler = AdapterMetrics.timed(AdapterMetrics.CKAN_REQUESTS, resultHandler,
+                    "host", dsUrl.getHost(), "action", action(resourceAPIPath));
+            send(webClient.getAbs(dsUrl.toString()).timeout(timeout(timeout)), dsUrl, timedHandler);
         } catch (MalformedURLException e) {
             LOGGER.error(e);
             resultHandler.handle(Future.failedFuture(e.getMessage()));
         }
-        return this;
+    }
+
+    /**
+     * Sends the request as soon as the circuit breaker and the concurrency limit of the CKAN host allow it. Requests
+     * without response, server errors and 429 count as failures of the host.
+     */
+    private void send(HttpRequest<Buffer> request, URL dsUrl, Handler<AsyncResult<JsonObject>> resultHandler) {
+        HostGuard guard = hostGuards.forHost(dsUrl.getAuthority());
+        guard.acquire(v -> request.send(ar -> {
+            guard.release(ar.succeeded() && ar.result().statusCode() < 500 && ar.result().statusCode() != 429);
+            handleResponse(ar, dsUrl, resultHandler);
+        }), rejected -> {
+            LOGGER.error(rejected.getMessage());
+            resultHandler.handle(Future.failedFuture(rejected));
+        });
+    }
+
+    private long timeout(long timeout) {
+        return timeout > 0 ? timeout : defaultTimeout;
+    }
+
+    /**
+     * @return the CKAN action of an API path, e.g. "package_show" for "/package_show?id="
+     */
+    private String action(String resourceAPIPath) {
+        String action = resourceAPIPath.startsWith("/") ? resourceAPIPath.substring(1) : resourceAPIPath;
+        int query = action.indexOf('?');
+        return query >= 0 ? action.substring(0, query) : action;
+    }
+
+    private void handleResponse(AsyncResult<HttpResponse<Buffer>> ar, URL dsUrl, Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (ar.succeeded()) {
+            JsonObject body;
+            try {
+                body = ar.result().bodyAsJsonObject();
+            } catch (DecodeException e) {
+                LOGGER.error("Invalid response from CKAN for " + dsUrl + ": " + e.getMessage());
+                resultHandler.handle(Future.failedFuture(e.getMessage()));
+                return;
+            }
+            if(body != null && body.getBoolean("success", false)){
+                resultHandler.handle(Future.succeededFuture(body.getJsonObject("result").put("originalURL", dsUrl.toString())));
+            } else {
+                resultHandler.handle(Future.failedFuture(""));
+            }
+        } else {
+            LOGGER.error("No response from CKAN.", ar.cause());
+            resultHandler.handle(Future.failedFuture(ar.cause()));
+        }
     }
 }
@@ -1,31 +1,74 @@
 package de.fraunhofer.fokus.ids.services.ckan;
 
 import de.fraunhofer.fokus.ids.services.Constants;
+import de.fraunhofer.fokus.ids.services.HostGuards;
+import de.fraunhofer.fokus.ids.services.HttpClients;
+import de.fraunhofer.fokus.ids.services.cache.ExpiringCache;
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
-import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
 import io.vertx.serviceproxy.ServiceBinder;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
 public class CKANServiceVerticle extends AbstractVerticle {
 
+    private Logger LOGGER = LoggerFactory.getLogger(CKANServiceVerticle.class.getName());
+
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final long DEFAULT_CACHE_TTL_SECONDS = 300;
+    private static final String CACHE_KEY = "cache";
+
     @Override
     public void start(Promise<Void> startPromise) {
-        WebClientOptions options = new WebClientOptions().setTrustAll(true);
-        WebClient webClient = WebClient.create(vertx, options);
-        CKANService.create(webClient, ready -> {
-            if (ready.succeeded()) {
-                ServiceBinder binder = new ServiceBinder(vertx);
-                binder
-                        .setAddress(Constants.CKAN_SERVICE)
-                        .register(CKANService.class, ready.result());
-                startPromise.complete();
+
+        ConfigStoreOptions confStore = new ConfigStoreOptions()
+                .setType("env");
+
+        ConfigRetrieverOptions options = new ConfigRetrieverOptions().addStore(confStore);
+
+        ConfigRetriever retriever = ConfigRetriever.create(vertx, options);
+
+        retriever.getConfig(ar -> {
+            if (ar.succeeded()) {
+                JsonObject env = ar.result();
+                HttpClients httpClients = HttpClients.get(vertx, env);
+                CKANService.create(httpClients, sharedCache(vertx, env), HostGuards.get(vertx, HostGuards.CKAN, env),
+                        env.getLong("CKAN_TIMEOUT", CKANServiceImpl.DEFAULT_TIMEOUT), ready -> {
+                    if (ready.succeeded()) {
+                        ServiceBinder binder = new ServiceBinder(vertx);
+                        binder
+                                .setAddress(Constants.CKAN_SERVICE)
+                                .register(CKANService.class, ready.result());
+                        startPromise.complete();
+                    } else {
+                        startPromise.fail(ready.cause());
+                    }
+                });
             } else {
-                startPromise.fail(ready.cause());
+                LOGGER.error("Config could not be retrieved.");
+                startPromise.fail(ar.cause());
             }
         });
     }
 
+    /**
+     * @return the response cache shared by all instances of this verticle and all local service instances
+     */
+    static ExpiringCache<String, JsonObject> sharedCache(Vertx vertx, JsonObject env) {
+        LocalMap<String, ExpiringCache<String, JsonObject>> map = vertx.sharedData().getLocalMap(Constants.CKAN_CACHE);
+        ExpiringCache<String, JsonObject> cache = new ExpiringCache<>(
+                env.getInteger("CKAN_CACHE_SIZE", DEFAULT_CACHE_SIZE),
+                env.getLong("CKAN_CACHE_TTL", DEFAULT_CACHE_TTL_SECONDS) * 1000);
+        ExpiringCache<String, JsonObject> existing = map.putIfAbsent(CACHE_KEY, cache);
+        return existing != null ? existing : cache;
+    }
+
 }
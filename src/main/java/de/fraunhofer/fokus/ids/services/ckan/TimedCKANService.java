@@ -0,0 +1,54 @@
+package de.fraunhofer.fokus.ids.services.ckan;
+
+import de.fraunhofer.fokus.ids.services.AdapterMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Records the event bus round trip time of every call made through a CKANService proxy. Calls with a timeout are sent
+ * with that timeout, so the caller is not kept waiting longer than the CKAN request may take.
+ */
+class TimedCKANService implements CKANService {
+
+    private final Vertx vertx;
+    private final String address;
+    private final CKANService proxy;
+
+    TimedCKANService(Vertx vertx, String address, long sendTimeout) {
+        this.vertx = vertx;
+        this.address = address;
+        this.proxy = new CKANServiceVertxEBProxy(vertx, address, new DeliveryOptions().setSendTimeout(sendTimeout));
+    }
+
+    @Override
+    public CKANService query(String ckanApiUrl, String resourceID, String resourceAPIPath, long timeout, Handler<AsyncResult<JsonObject>> resultHandler) {
+        proxy(timeout).query(ckanApiUrl, resourceID, resourceAPIPath, timeout, timed("query", resultHandler));
+        return this;
+    }
+
+    @Override
+    public CKANService search(String ckanApiUrl, JsonObject params, long timeout, Handler<AsyncResult<JsonObject>> resultHandler) {
+        proxy(timeout).search(ckanApiUrl, params, timeout, timed("search", resultHandler));
+        return this;
+    }
+
+    @Override
+    public CKANService statistics(Handler<AsyncResult<JsonObject>> resultHandler) {
+        proxy.statistics(timed("statistics", resultHandler));
+        return this;
+    }
+
+    private CKANService proxy(long timeout) {
+        if (timeout <= 0) {
+            return proxy;
+        }
+        return new CKANServiceVertxEBProxy(vertx, address, new DeliveryOptions().setSendTimeout(timeout));
+    }
+
+    private <T> Handler<AsyncResult<T>> timed(String action, Handler<AsyncResult<T>> resultHandler) {
+        return AdapterMetrics.timed(AdapterMetrics.EVENT_BUS_ROUND_TRIPS, resultHandler, "address", address, "action", action);
+    }
+}
@@ -0,0 +1,174 @@
+package de.fraunhofer.fokus.ids.services.conversion;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base class for converters reading RFC 4180 CSV. The input is parsed byte by byte, so chunk boundaries may fall
+ * anywhere, also inside quoted fields or multi-byte UTF-8 characters. Only the current record is held in memory and
+ * every completed record is handed to the subclass immediately. The first record is used as header.
+ */
+public abstract class CsvConverter implements FormatConverter {
+
+    private static final String BOM = "\uFEFF";
+
+    private final byte delimiter;
+    private final List<String> record = new ArrayList<>();
+    private final StringBuilder output = new StringBuilder();
+    private List<String> header;
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private boolean quoted;
+    private boolean quotePending;
+    private boolean recordQuoted;
+    private boolean skipLineFeed;
+    private boolean started;
+    private long records;
+
+    protected CsvConverter(char delimiter) {
+        this.delimiter = (byte) delimiter;
+    }
+
+    @Override
+    public Buffer convert(Buffer chunk) {
+        if (!started) {
+            started = true;
+            start(output);
+        }
+        byte[] bytes = chunk.getBytes();
+        for (byte b : bytes) {
+            if (quoted) {
+                if (quotePending) {
+                    quotePending = false;
+                    if (b == '"') {
+                        append(b);
+                        continue;
+                    }
+                    quoted = false;
+                } else {
+                    if (b == '"') {
+                        quotePending = true;
+                    } else {
+                        append(b);
+                    }
+                    continue;
+                }
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            if (b == delimiter) {
+                endField();
+            } else if (b == '\r') {
+                endRecord();
+                skipLineFeed = true;
+            } else if (b == '\n') {
+                endRecord();
+            } else if (b == '"' && fieldLength == 0) {
+                quoted = true;
+                recordQuoted = true;
+            } else {
+                append(b);
+            }
+        }
+        return flush();
+    }
+
+    @Override
+    public Buffer end() {
+        if (!started) {
+            started = true;
+            start(output);
+        }
+        if (quoted && !quotePending) {
+            throw new IllegalArgumentException("CSV ends inside a quoted field.");
+        }
+        if (fieldLength > 0 || !record.isEmpty() || recordQuoted) {
+            endRecord();
+        }
+        finish(output);
+        return flush();
+    }
+
+    /**
+     * @return number of records converted so far, without the header
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Called once before the first record.
+     */
+    protected abstract void start(StringBuilder out);
+
+    /**
+     * Called for every record after the header.
+     * @param header column names as given in the first record
+     * @param values values of the record, may have fewer or more entries than the header
+     */
+    protected abstract void record(List<String> header, List<String> values, StringBuilder out);
+
+    /**
+     * Called once after the last record.
+     */
+    protected abstract void finish(StringBuilder out);
+
+    /**
+     * @return column name for the value at the given index
+     */
+    protected static String columnName(List<String> header, int index) {
+        if (index < header.size() && !header.get(index).isEmpty()) {
+            return header.get(index);
+        }
+        return "column" + (index + 1);
+    }
+
+    private void append(byte b) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[fieldLength++] = b;
+    }
+
+    private void endField() {
+        record.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+        fieldLength = 0;
+    }
+
+    private void endRecord() {
+        endField();
+        boolean blankLine = record.size() == 1 && record.get(0).isEmpty() && !recordQuoted;
+        recordQuoted = false;
+        if (blankLine) {
+            record.clear();
+            return;
+        }
+        if (header == null) {
+            header = new ArrayList<>(record);
+            if (header.get(0).startsWith(BOM)) {
+                header.set(0, header.get(0).substring(BOM.length()));
+            }
+        } else {
+            record(header, record, output);
+            records++;
+        }
+        record.clear();
+    }
+
+    private Buffer flush() {
+        if (output.length() == 0) {
+            return Buffer.buffer();
+        }
+        Buffer buffer = Buffer.buffer(output.toString());
+        output.setLength(0);
+        return buffer;
+    }
+}
@@ -0,0 +1,80 @@
+package de.fraunhofer.fokus.ids.services.conversion;
+
+import java.util.List;
+
+/**
+ * Converts CSV to a JSON array with one object per record, using the header as keys. All values are strings.
+ */
+public class CsvToJsonConverter extends CsvConverter {
+
+    private boolean first = true;
+
+    public CsvToJsonConverter() {
+        this(',');
+    }
+
+    public CsvToJsonConverter(char delimiter) {
+        super(delimiter);
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json; charset=utf-8";
+    }
+
+    @Override
+    protected void start(StringBuilder out) {
+        out.append('[');
+    }
+
+    @Override
+    protected void record(List<String> header, List<String> values, StringBuilder out) {
+        out.append(first ? "\n{" : ",\n{");
+        first = false;
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendString(columnName(header, i), out);
+            out.append(':');
+            appendString(values.get(i), out);
+        }
+        out.append('}');
+    }
+
+    @Override
+    protected void finish(StringBuilder out) {
+        out.append(first ? "]" : "\n]");
+    }
+
+    private static void appendString(String value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
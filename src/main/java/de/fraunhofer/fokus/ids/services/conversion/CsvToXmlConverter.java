@@ -0,0 +1,90 @@
+package de.fraunhofer.fokus.ids.services.conversion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts CSV to XML with one record element per record and one child element per column. Column names that are not
+ * valid element names are adjusted, e.g. "first name" becomes "first_name".
+ */
+public class CsvToXmlConverter extends CsvConverter {
+
+    private final List<String> elementNames = new ArrayList<>();
+
+    public CsvToXmlConverter() {
+        this(',');
+    }
+
+    public CsvToXmlConverter(char delimiter) {
+        super(delimiter);
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/xml; charset=utf-8";
+    }
+
+    @Override
+    protected void start(StringBuilder out) {
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<records>");
+    }
+
+    @Override
+    protected void record(List<String> header, List<String> values, StringBuilder out) {
+        out.append("\n<record>");
+        for (int i = 0; i < values.size(); i++) {
+            String name = elementName(header, i);
+            out.append('<').append(name).append('>');
+            appendText(values.get(i), out);
+            out.append("</").append(name).append('>');
+        }
+        out.append("</record>");
+    }
+
+    @Override
+    protected void finish(StringBuilder out) {
+        out.append("\n</records>");
+    }
+
+    private String elementName(List<String> header, int index) {
+        while (elementNames.size() <= index) {
+            elementNames.add(toElementName(columnName(header, elementNames.size())));
+        }
+        return elementNames.get(index);
+    }
+
+    private static String toElementName(String column) {
+        StringBuilder name = new StringBuilder(column.length());
+        for (int i = 0; i < column.length(); i++) {
+            char c = column.charAt(i);
+            boolean valid = Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+            name.append(valid ? c : '_');
+        }
+        if (name.length() == 0 || !(Character.isLetter(name.charAt(0)) || name.charAt(0) == '_')
+                || name.toString().toLowerCase().startsWith("xml")) {
+            name.insert(0, '_');
+        }
+        return name.toString();
+    }
+
+    private static void appendText(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                default:
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package de.fraunhofer.fokus.ids.services.conversion;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Incremental conversion of a file from one format to another. A converter is created per transfer, receives the
+ * upstream body chunk by chunk and returns the converted output available so far, so files of any size can be
+ * converted with constant memory.
+ */
+public interface FormatConverter {
+
+    /**
+     * @return content type of the converted output
+     */
+    String getContentType();
+
+    /**
+     * @param chunk next chunk of the source file
+     * @return converted output produced by this chunk, may be empty
+     */
+    Buffer convert(Buffer chunk);
+
+    /**
+     * Called after the last chunk.
+     * @return remaining converted output
+     */
+    Buffer end();
+}
@@ -0,0 +1,84 @@
+package de.fraunhofer.fokus.ids.services.conversion;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the available format conversions.
+ */
+public class FormatConverters {
+
+    public static final String JSON = "JSON";
+    public static final String XML = "XML";
+    public static final String TXT = "TXT";
+    public static final String CSV = "CSV";
+    public static final String TSV = "TSV";
+
+    private static final Map<String, Supplier<FormatConverter>> CONVERTERS = new HashMap<>();
+
+    static {
+        CONVERTERS.put(CSV + "->" + JSON, () -> new CsvToJsonConverter(','));
+        CONVERTERS.put(CSV + "->" + XML, () -> new CsvToXmlConverter(','));
+        CONVERTERS.put(TSV + "->" + JSON, () -> new CsvToJsonConverter('\t'));
+        CONVERTERS.put(TSV + "->" + XML, () -> new CsvToXmlConverter('\t'));
+    }
+
+    private FormatConverters() {
+    }
+
+    /**
+     * @param sourceFormat format of the upstream file, as given by CKAN or as content type
+     * @param targetFormat requested format
+     * @return a new converter, or null if the file is to be delivered as it is
+     */
+    public static FormatConverter create(String sourceFormat, String targetFormat) {
+        String source = normalize(sourceFormat);
+        String target = normalize(targetFormat);
+        if (source == null || target == null || source.equals(target) || TXT.equals(target)) {
+            return null;
+        }
+        Supplier<FormatConverter> converter = CONVERTERS.get(source + "->" + target);
+        return converter == null ? null : converter.get();
+    }
+
+    /**
+     * Maps CKAN format names (e.g. "csv", ".CSV") and content types (e.g. "text/csv; charset=utf-8") to a format name.
+     */
+    public static String normalize(String format) {
+        if (format == null || format.trim().isEmpty()) {
+            return null;
+        }
+        String normalized = format.trim().toLowerCase(Locale.ROOT);
+        int parameters = normalized.indexOf(';');
+        if (parameters >= 0) {
+            normalized = normalized.substring(0, parameters).trim();
+        }
+        if (normalized.startsWith(".")) {
+            normalized = normalized.substring(1);
+        }
+        switch (normalized) {
+            case "json":
+            case "application/json":
+                return JSON;
+            case "xml":
+            case "application/xml":
+            case "text/xml":
+                return XML;
+            case "txt":
+            case "text":
+            case "text/plain":
+                return TXT;
+            case "csv":
+            case "text/csv":
+            case "text/comma-separated-values":
+                return CSV;
+            case "tsv":
+            case "text/tab-separated-values":
+                return TSV;
+            default:
+                return normalized.toUpperCase(Locale.ROOT);
+        }
+    }
+}
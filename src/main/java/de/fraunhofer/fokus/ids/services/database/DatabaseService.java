@@ -1,5 +1,6 @@
 package de.fraunhofer.fokus.ids.services.database;
 
+import de.fraunhofer.fokus.ids.services.Constants;
 import io.vertx.codegen.annotations.Fluent;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
@@ -7,9 +8,11 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.SQLClient;
+import io.vertx.pgclient.PgPool;
 
 import java.util.List;
 /**
@@ -25,13 +28,58 @@ public interface DatabaseService {
     @Fluent
     DatabaseService update(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler);
 
+    @Fluent
+    DatabaseService batchUpdate(String query, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler);
+
+    @Fluent
+    DatabaseService batch(List<String> queries, Handler<AsyncResult<List<Integer>>> resultHandler);
+
+    /**
+     * Performs the statements in order within a single transaction, each with its own parameters.
+     * @param queries SQL statements to perform
+     * @param params one parameter set per statement
+     * @param resultHandler receives the number of rows updated by each statement
+     */
+    @Fluent
+    DatabaseService transaction(List<String> queries, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler);
+
+    /**
+     * Migrates the schema to the given version, unless schema_version already contains it. The statements and the
+     * insert of the version run in one transaction. On PostgreSQL the transaction takes an advisory lock first, so
+     * adapters sharing a database migrate one after another.
+     * @param version schema version reached by the statements
+     * @param statements SQL statements migrating from the previous version
+     * @param resultHandler receives true if the statements were executed, false if the version was already reached
+     */
+    @Fluent
+    DatabaseService migrate(int version, List<String> statements, Handler<AsyncResult<Boolean>> resultHandler);
+
     @GenIgnore
     static DatabaseService create(SQLClient dbClient, Handler<AsyncResult<DatabaseService>> readyHandler) {
         return new DatabaseServiceImpl(dbClient, readyHandler);
     }
 
+    @GenIgnore
+    static DatabaseService create(SQLClient readClient, SQLClient writeClient, Handler<AsyncResult<DatabaseService>> readyHandler) {
+        return new DatabaseServiceImpl(readClient, writeClient, readyHandler);
+    }
+
+    @GenIgnore
+    static DatabaseService create(PgPool pgClient, Handler<AsyncResult<DatabaseService>> readyHandler) {
+        return new PostgresDatabaseServiceImpl(pgClient, readyHandler);
+    }
+
     @GenIgnore
     static DatabaseService createProxy(Vertx vertx, String address) {
-        return new DatabaseServiceVertxEBProxy(vertx, address);
+        return createProxy(vertx, address, Constants.DEFAULT_SERVICE_TIMEOUT);
+    }
+
+    /**
+     * @param sendTimeout event bus send timeout in ms, calls without reply within it fail with a TIMEOUT ReplyException
+     */
+    @GenIgnore
+    static DatabaseService createProxy(Vertx vertx, String address, long sendTimeout) {
+        return new TimedDatabaseService(new DatabaseServiceVertxEBProxy(vertx, address,
+                new DeliveryOptions().setSendTimeout(sendTimeout)), address);
     }
 }
@@ -1,5 +1,6 @@
 package de.fraunhofer.fokus.ids.services.database;
 
+import de.fraunhofer.fokus.ids.services.AdapterMetrics;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -13,31 +14,119 @@ import io.vertx.ext.sql.SQLConnection;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
 public class DatabaseServiceImpl implements DatabaseService {
     private Logger LOGGER = LoggerFactory.getLogger(DatabaseServiceImpl.class.getName());
     private SQLClient jdbc;
+    private SQLClient writeJdbc;
 
     public enum ConnectionType{
         QUERY,
         UPDATE
     }
     public DatabaseServiceImpl(SQLClient dbClient, Handler<AsyncResult<DatabaseService>> readyHandler){
-        this.jdbc = dbClient;
+        this(dbClient, dbClient, readyHandler);
+    }
+
+    /**
+     * @param readClient client used for queries
+     * @param writeClient client used for updates and batches
+     */
+    public DatabaseServiceImpl(SQLClient readClient, SQLClient writeClient, Handler<AsyncResult<DatabaseService>> readyHandler){
+        this.jdbc = readClient;
+        this.writeJdbc = writeClient;
         readyHandler.handle(Future.succeededFuture(this));
     }
 
     @Override
     public DatabaseService query(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler) {
-        createResult(query, params, ConnectionType.QUERY, resultHandler);
+        createResult(query, params, ConnectionType.QUERY,
+                AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, resultHandler, "operation", "query"));
         return this;
     }
 
     @Override
     public DatabaseService update(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler) {
-        createResult(query, params, ConnectionType.UPDATE, resultHandler);
+        createResult(query, params, ConnectionType.UPDATE,
+                AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, resultHandler, "operation", "update"));
+        return this;
+    }
+
+    /**
+     * Performs the update once per parameter set as a JDBC batch within a single transaction.
+     * @param query SQL update to perform
+     * @param params one parameter set per row
+     */
+    @Override
+    public DatabaseService batchUpdate(String query, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        if (params.isEmpty()) {
+            resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+            return this;
+        }
+        Handler<AsyncResult<List<Integer>>> timedHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, resultHandler, "operation", "batchUpdate");
+        createConnection(writeJdbc, connection -> handleBatch(connection,
+                (sqlConnection, handler) -> sqlConnection.batchWithParams(query, params, handler),
+                timedHandler));
+        return this;
+    }
+
+    /**
+     * Performs the given statements as a JDBC batch within a single transaction.
+     * @param queries SQL statements to perform
+     */
+    @Override
+    public DatabaseService batch(List<String> queries, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        if (queries.isEmpty()) {
+            resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+            return this;
+        }
+        Handler<AsyncResult<List<Integer>>> timedHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, resultHandler, "operation", "batch");
+        createConnection(writeJdbc, connection -> handleBatch(connection,
+                (sqlConnection, handler) -> sqlConnection.batch(queries, handler),
+                timedHandler));
+        return this;
+    }
+
+    @Override
+    public DatabaseService transaction(List<String> queries, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        if (queries.size() != params.size()) {
+            resultHandler.handle(Future.failedFuture("Expected one parameter set per statement."));
+            return this;
+        }
+        if (queries.isEmpty()) {
+            resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+            return this;
+        }
+        Handler<AsyncResult<List<Integer>>> timedHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, resultHandler, "operation", "transaction");
+        createConnection(writeJdbc, connection -> handleBatch(connection,
+                (sqlConnection, handler) -> updateAll(sqlConnection, queries, params, new ArrayList<>(), handler),
+                timedHandler));
+        return this;
+    }
+
+    /**
+     * Checks the schema version and performs the migration as a JDBC batch within the same transaction. SQLite
+     * serializes writing transactions itself, the primary key of schema_version rejects a concurrent duplicate.
+     */
+    @Override
+    public DatabaseService migrate(int version, List<String> statements, Handler<AsyncResult<Boolean>> resultHandler) {
+        Handler<AsyncResult<Boolean>> timedHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, resultHandler, "operation", "migrate");
+        List<String> queries = new ArrayList<>(statements);
+        queries.add("INSERT INTO schema_version values(" + version + ")");
+        createConnection(writeJdbc, connection -> handleBatch(connection,
+                (sqlConnection, handler) -> sqlConnection.queryWithParams("SELECT version FROM schema_version WHERE version = ?", new JsonArray().add(version), query -> {
+                    if (query.failed()) {
+                        handler.handle(Future.failedFuture(query.cause()));
+                    } else if (query.result().getNumRows() > 0) {
+                        handler.handle(Future.succeededFuture(new ArrayList<>()));
+                    } else {
+                        sqlConnection.batch(queries, handler);
+                    }
+                }),
+                reply -> timedHandler.handle(reply.map(updated -> !updated.isEmpty()))));
         return this;
     }
 
@@ -49,7 +138,7 @@ public class DatabaseServiceImpl implements DatabaseService {
      */
     private void createResult(String queryString, JsonArray params, ConnectionType connectionType, Handler<AsyncResult<List<JsonObject>>> resultHandler){
 
-        createConnection(connection -> handleConnection(connection,
+        createConnection(connectionType == ConnectionType.QUERY ? jdbc : writeJdbc, connection -> handleConnection(connection,
                 connectionType,
                 queryString,
                 params,
@@ -61,11 +150,13 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     /**
      * Method to retrieve the connection from the (postgre) SQL client
+     * @param client SQL client to retrieve the connection from
      * @param next Handler to perform the query (handleQuery or handleQueryWithParams)
      */
-    private void createConnection(Handler<AsyncResult<SQLConnection>> next){
-
-        jdbc.getConnection(res -> {
+    private void createConnection(SQLClient client, Handler<AsyncResult<SQLConnection>> next){
+        long start = System.nanoTime();
+        client.getConnection(res -> {
+            AdapterMetrics.recordWait(AdapterMetrics.DATABASE_POOL_WAIT, start, "pool", client == writeJdbc && client != jdbc ? "write" : "read");
             if (res.succeeded()) {
                 next.handle(Future.succeededFuture(res.result()));
             }
@@ -167,6 +258,76 @@ public class DatabaseServiceImpl implements DatabaseService {
         }
     }
 
+    /**
+     * Method to perform a SQL batch in a transaction on the connection retrieved via createConnection
+     * @param result Connection future produced by createConnection
+     * @param batchOperation batch to perform on the connection
+     */
+    private void handleBatch(AsyncResult<SQLConnection> result,
+                             BiConsumer<SQLConnection, Handler<AsyncResult<List<Integer>>>> batchOperation,
+                             Handler<AsyncResult<List<Integer>>> resultHandler) {
+
+        if(result.failed()){
+            LOGGER.error("Connection Future failed.", result.cause());
+            resultHandler.handle(Future.failedFuture(result.cause().toString()));
+            return;
+        }
+        SQLConnection connection = result.result();
+        connection.setAutoCommit(false, autoCommit -> {
+            if (autoCommit.failed()) {
+                LOGGER.error("Transaction could not be started.", autoCommit.cause());
+                resultHandler.handle(Future.failedFuture(autoCommit.cause().toString()));
+                connection.close();
+                return;
+            }
+            batchOperation.accept(connection, batch -> {
+                if (batch.succeeded()) {
+                    connection.commit(commit -> {
+                        if (commit.succeeded()) {
+                            LOGGER.info("No. of rows batch updated: " + batch.result().size());
+                            resultHandler.handle(Future.succeededFuture(batch.result()));
+                        } else {
+                            LOGGER.error("Commit failed.", commit.cause());
+                            resultHandler.handle(Future.failedFuture(commit.cause().toString()));
+                        }
+                        connection.close();
+                    });
+                } else {
+                    LOGGER.error("Batch update failed.", batch.cause());
+                    connection.rollback(rollback -> {
+                        resultHandler.handle(Future.failedFuture(batch.cause().toString()));
+                        connection.close();
+                    });
+                }
+            });
+        });
+    }
+
+    /**
+     * Performs the statements one after another on the connection, stopping at the first failure.
+     * @param updated number of rows updated by each statement performed so far
+     */
+    private void updateAll(SQLConnection connection,
+                           List<String> queries,
+                           List<JsonArray> params,
+                           List<Integer> updated,
+                           Handler<AsyncResult<List<Integer>>> resultHandler) {
+
+        if (updated.size() == queries.size()) {
+            resultHandler.handle(Future.succeededFuture(updated));
+            return;
+        }
+        int index = updated.size();
+        connection.updateWithParams(queries.get(index), params.get(index), update -> {
+            if (update.succeeded()) {
+                updated.add(update.result().getUpdated());
+                updateAll(connection, queries, params, updated, resultHandler);
+            } else {
+                resultHandler.handle(Future.failedFuture(update.cause()));
+            }
+        });
+    }
+
     /**
      * Process the SQL ResultSet (as List<JSONObject>) and reply the results via receivedMessage
      * @param result SQL ResultSet as List<JsonObject>
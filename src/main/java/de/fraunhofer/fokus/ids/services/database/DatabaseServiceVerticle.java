@@ -5,13 +5,18 @@ import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
 import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.SQLClient;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
 import io.vertx.serviceproxy.ServiceBinder;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
@@ -20,6 +25,14 @@ public class DatabaseServiceVerticle extends AbstractVerticle {
 
     private Logger LOGGER = LoggerFactory.getLogger(DatabaseServiceVerticle.class.getName());
 
+    private static final String TYPE_POSTGRES = "postgres";
+    private static final String MODE_WAL = "wal";
+    private static final int DEFAULT_POSTGRES_POOL_SIZE = 10;
+    private static final String WRITE_DATA_SOURCE = "ckan-adapter-write";
+    private static final String READ_DATA_SOURCE = "ckan-adapter-read";
+    private static final int DEFAULT_CACHE_SIZE = -16000;
+    private static final int DEFAULT_BUSY_TIMEOUT = 5000;
+
     @Override
     public void start(Promise<Void> startPromise) {
 
@@ -33,12 +46,7 @@ public class DatabaseServiceVerticle extends AbstractVerticle {
         retriever.getConfig(ar -> {
             if (ar.succeeded()) {
                 JsonObject env = ar.result();
-                JsonObject config = new JsonObject()
-                        .put("url", "jdbc:sqlite:"+env.getString("REPOSITORY")+"db")
-                        .put("driver_class", "org.sqlite.jdbcDriver")
-                        .put("max_pool_size", 30);
-                SQLClient jdbc = JDBCClient.createShared(vertx, config);
-                DatabaseService.create(jdbc, ready -> {
+                Handler<AsyncResult<DatabaseService>> readyHandler = ready -> {
                     if (ready.succeeded()) {
                         ServiceBinder binder = new ServiceBinder(vertx);
                         binder
@@ -48,11 +56,66 @@ public class DatabaseServiceVerticle extends AbstractVerticle {
                     } else {
                         startPromise.fail(ready.cause());
                     }
-                });
+                };
+                if (TYPE_POSTGRES.equalsIgnoreCase(env.getString("DATABASE_TYPE", ""))) {
+                    createPostgresClient(env, readyHandler);
+                } else if (MODE_WAL.equalsIgnoreCase(env.getString("DATABASE_MODE", ""))) {
+                    createWalClients(env, readyHandler);
+                } else {
+                    JsonObject config = new JsonObject()
+                            .put("url", "jdbc:sqlite:"+env.getString("REPOSITORY")+"db")
+                            .put("driver_class", "org.sqlite.jdbcDriver")
+                            .put("max_pool_size", 30);
+                    SQLClient jdbc = JDBCClient.createShared(vertx, config);
+                    DatabaseService.create(jdbc, readyHandler);
+                }
             } else {
                 LOGGER.error("Config could not be retrieved.");
             }
         });
     }
 
+    /**
+     * Connects to a PostgreSQL database shared by several adapter instances.
+     */
+    private void createPostgresClient(JsonObject env, Handler<AsyncResult<DatabaseService>> readyHandler) {
+        PgConnectOptions connectOptions = new PgConnectOptions()
+                .setHost(env.getString("DATABASE_HOST", "localhost"))
+                .setPort(env.getInteger("DATABASE_PORT", 5432))
+                .setDatabase(env.getString("DATABASE_NAME", "ckanadapter"))
+                .setUser(env.getString("DATABASE_USER", "postgres"))
+                .setPassword(env.getString("DATABASE_PASSWORD", ""));
+        PoolOptions poolOptions = new PoolOptions()
+                .setMaxSize(env.getInteger("DATABASE_POOL_SIZE", DEFAULT_POSTGRES_POOL_SIZE));
+        LOGGER.info("Connecting to PostgreSQL at " + connectOptions.getHost() + ":" + connectOptions.getPort());
+        PgPool client = PgPool.pool(vertx, connectOptions, poolOptions);
+        DatabaseService.create(client, readyHandler);
+    }
+
+    /**
+     * Opens the database in WAL mode with a single write connection, so writes are queued instead of failing with
+     * SQLITE_BUSY, and a separate pool of read connections that is not blocked by running writes.
+     */
+    private void createWalClients(JsonObject env, Handler<AsyncResult<DatabaseService>> readyHandler) {
+        String url = "jdbc:sqlite:" + env.getString("REPOSITORY") + "db"
+                + "?journal_mode=WAL"
+                + "&synchronous=" + env.getString("DATABASE_SYNCHRONOUS", "NORMAL")
+                + "&cache_size=" + env.getInteger("DATABASE_CACHE_SIZE", DEFAULT_CACHE_SIZE)
+                + "&busy_timeout=" + env.getInteger("DATABASE_BUSY_TIMEOUT", DEFAULT_BUSY_TIMEOUT);
+        JsonObject writeConfig = new JsonObject()
+                .put("url", url)
+                .put("driver_class", "org.sqlite.jdbcDriver")
+                .put("initial_pool_size", 1)
+                .put("min_pool_size", 1)
+                .put("max_pool_size", 1);
+        JsonObject readConfig = new JsonObject()
+                .put("url", url)
+                .put("driver_class", "org.sqlite.jdbcDriver")
+                .put("max_pool_size", env.getInteger("DATABASE_READ_POOL_SIZE", Runtime.getRuntime().availableProcessors()));
+        LOGGER.info("Opening database in WAL mode.");
+        SQLClient writeClient = JDBCClient.createShared(vertx, writeConfig, WRITE_DATA_SOURCE);
+        SQLClient readClient = JDBCClient.createShared(vertx, readConfig, READ_DATA_SOURCE);
+        DatabaseService.create(readClient, writeClient, readyHandler);
+    }
+
 }
@@ -0,0 +1,277 @@
+package de.fraunhofer.fokus.ids.services.database;
+
+import de.fraunhofer.fokus.ids.services.AdapterMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DatabaseService implementation on the non-blocking PostgreSQL client. Statements use the same "?" placeholders
+ * as the JDBC implementation, they are rewritten to PostgreSQL's numbered placeholders before execution.
+ */
+public class PostgresDatabaseServiceImpl implements DatabaseService {
+    /**
+     * Key of the advisory lock serializing schema migrations of all adapters sharing the database.
+     */
+    private static final long MIGRATION_LOCK = 0x6f6463L;
+
+    private Logger LOGGER = LoggerFactory.getLogger(PostgresDatabaseServiceImpl.class.getName());
+    private PgPool client;
+
+    public PostgresDatabaseServiceImpl(PgPool client, Handler<AsyncResult<DatabaseService>> readyHandler){
+        this.client = client;
+        readyHandler.handle(Future.succeededFuture(this));
+    }
+
+    @Override
+    public DatabaseService query(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> handler) {
+        Handler<AsyncResult<List<JsonObject>>> resultHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, handler, "operation", "query");
+        client.preparedQuery(toPostgres(query)).execute(toTuple(params), reply -> {
+            if (reply.succeeded()) {
+                resultHandler.handle(Future.succeededFuture(toJson(reply.result())));
+            } else {
+                LOGGER.error("Query failed.", reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public DatabaseService update(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> handler) {
+        Handler<AsyncResult<List<JsonObject>>> resultHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, handler, "operation", "update");
+        client.preparedQuery(toPostgres(query)).execute(toTuple(params), reply -> {
+            if (reply.succeeded()) {
+                LOGGER.info("No. of rows updated: " + reply.result().rowCount());
+                resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+            } else {
+                LOGGER.error("Update failed.", reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public DatabaseService batchUpdate(String query, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> handler) {
+        if (params.isEmpty()) {
+            handler.handle(Future.succeededFuture(new ArrayList<>()));
+            return this;
+        }
+        Handler<AsyncResult<List<Integer>>> resultHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, handler, "operation", "batchUpdate");
+        List<Tuple> tuples = new ArrayList<>();
+        for (JsonArray param : params) {
+            tuples.add(toTuple(param));
+        }
+        long start = System.nanoTime();
+        client.begin(begin -> {
+            AdapterMetrics.recordWait(AdapterMetrics.DATABASE_POOL_WAIT, start, "pool", "postgres");
+            if (begin.failed()) {
+                LOGGER.error("Transaction could not be started.", begin.cause());
+                resultHandler.handle(Future.failedFuture(begin.cause().toString()));
+                return;
+            }
+            Transaction transaction = begin.result();
+            transaction.preparedQuery(toPostgres(query)).executeBatch(tuples, batch -> {
+                if (batch.succeeded()) {
+                    List<Integer> updated = new ArrayList<>();
+                    for (RowSet<Row> rowSet = batch.result(); rowSet != null; rowSet = rowSet.next()) {
+                        updated.add(rowSet.rowCount());
+                    }
+                    commit(transaction, updated, resultHandler);
+                } else {
+                    LOGGER.error("Batch update failed.", batch.cause());
+                    transaction.rollback();
+                    resultHandler.handle(Future.failedFuture(batch.cause().toString()));
+                }
+            });
+        });
+        return this;
+    }
+
+    @Override
+    public DatabaseService batch(List<String> queries, Handler<AsyncResult<List<Integer>>> handler) {
+        if (queries.isEmpty()) {
+            handler.handle(Future.succeededFuture(new ArrayList<>()));
+            return this;
+        }
+        Handler<AsyncResult<List<Integer>>> resultHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, handler, "operation", "batch");
+        long start = System.nanoTime();
+        client.begin(begin -> {
+            AdapterMetrics.recordWait(AdapterMetrics.DATABASE_POOL_WAIT, start, "pool", "postgres");
+            if (begin.failed()) {
+                LOGGER.error("Transaction could not be started.", begin.cause());
+                resultHandler.handle(Future.failedFuture(begin.cause().toString()));
+                return;
+            }
+            executeAll(begin.result(), queries, new ArrayList<>(), resultHandler);
+        });
+        return this;
+    }
+
+    @Override
+    public DatabaseService transaction(List<String> queries, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> handler) {
+        if (queries.size() != params.size()) {
+            handler.handle(Future.failedFuture("Expected one parameter set per statement."));
+            return this;
+        }
+        if (queries.isEmpty()) {
+            handler.handle(Future.succeededFuture(new ArrayList<>()));
+            return this;
+        }
+        Handler<AsyncResult<List<Integer>>> resultHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, handler, "operation", "transaction");
+        long start = System.nanoTime();
+        client.begin(begin -> {
+            AdapterMetrics.recordWait(AdapterMetrics.DATABASE_POOL_WAIT, start, "pool", "postgres");
+            if (begin.failed()) {
+                LOGGER.error("Transaction could not be started.", begin.cause());
+                resultHandler.handle(Future.failedFuture(begin.cause().toString()));
+                return;
+            }
+            executeAllWithParams(begin.result(), queries, params, new ArrayList<>(), resultHandler);
+        });
+        return this;
+    }
+
+    @Override
+    public DatabaseService migrate(int version, List<String> statements, Handler<AsyncResult<Boolean>> handler) {
+        Handler<AsyncResult<Boolean>> resultHandler = AdapterMetrics.timed(AdapterMetrics.DATABASE_OPERATIONS, handler, "operation", "migrate");
+        List<String> queries = new ArrayList<>(statements);
+        queries.add("INSERT INTO schema_version values(" + version + ")");
+        long start = System.nanoTime();
+        client.begin(begin -> {
+            AdapterMetrics.recordWait(AdapterMetrics.DATABASE_POOL_WAIT, start, "pool", "postgres");
+            if (begin.failed()) {
+                LOGGER.error("Transaction could not be started.", begin.cause());
+                resultHandler.handle(Future.failedFuture(begin.cause().toString()));
+                return;
+            }
+            Transaction transaction = begin.result();
+            transaction.query("SELECT 1 FROM (SELECT pg_advisory_xact_lock(" + MIGRATION_LOCK + ")) AS migration_lock").execute(lock -> {
+                if (lock.failed()) {
+                    LOGGER.error("Migration lock could not be taken.", lock.cause());
+                    transaction.rollback();
+                    resultHandler.handle(Future.failedFuture(lock.cause().toString()));
+                    return;
+                }
+                transaction.preparedQuery("SELECT version FROM schema_version WHERE version = $1").execute(Tuple.of(version), existing -> {
+                    if (existing.failed()) {
+                        LOGGER.error("Schema version could not be retrieved.", existing.cause());
+                        transaction.rollback();
+                        resultHandler.handle(Future.failedFuture(existing.cause().toString()));
+                    } else if (existing.result().size() > 0) {
+                        commit(transaction, new ArrayList<>(), reply -> resultHandler.handle(reply.map(false)));
+                    } else {
+                        executeAll(transaction, queries, new ArrayList<>(), reply -> resultHandler.handle(reply.map(true)));
+                    }
+                });
+            });
+        });
+        return this;
+    }
+
+    private void executeAll(Transaction transaction, List<String> queries, List<Integer> updated, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        if (updated.size() == queries.size()) {
+            commit(transaction, updated, resultHandler);
+            return;
+        }
+        transaction.query(queries.get(updated.size())).execute(reply -> {
+            if (reply.succeeded()) {
+                updated.add(reply.result().rowCount());
+                executeAll(transaction, queries, updated, resultHandler);
+            } else {
+                LOGGER.error("Batch failed.", reply.cause());
+                transaction.rollback();
+                resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+            }
+        });
+    }
+
+    private void executeAllWithParams(Transaction transaction, List<String> queries, List<JsonArray> params, List<Integer> updated, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        if (updated.size() == queries.size()) {
+            commit(transaction, updated, resultHandler);
+            return;
+        }
+        int index = updated.size();
+        transaction.preparedQuery(toPostgres(queries.get(index))).execute(toTuple(params.get(index)), reply -> {
+            if (reply.succeeded()) {
+                updated.add(reply.result().rowCount());
+                executeAllWithParams(transaction, queries, params, updated, resultHandler);
+            } else {
+                LOGGER.error("Transaction failed.", reply.cause());
+                transaction.rollback();
+                resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+            }
+        });
+    }
+
+    private void commit(Transaction transaction, List<Integer> updated, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        transaction.commit(commit -> {
+            if (commit.succeeded()) {
+                LOGGER.info("No. of rows batch updated: " + updated.size());
+                resultHandler.handle(Future.succeededFuture(updated));
+            } else {
+                LOGGER.error("Commit failed.", commit.cause());
+                resultHandler.handle(Future.failedFuture(commit.cause().toString()));
+            }
+        });
+    }
+
+    /**
+     * Rewrites "?" placeholders outside of string literals to "$1", "$2", ...
+     */
+    private String toPostgres(String query) {
+        StringBuilder sb = new StringBuilder(query.length() + 8);
+        boolean inLiteral = false;
+        int index = 0;
+        for (char c : query.toCharArray()) {
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+            }
+            if (c == '?' && !inLiteral) {
+                sb.append('$').append(++index);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private Tuple toTuple(JsonArray params) {
+        Tuple tuple = Tuple.tuple();
+        for (Object param : params) {
+            tuple.addValue(param instanceof TemporalAccessor ? param.toString() : param);
+        }
+        return tuple;
+    }
+
+    private List<JsonObject> toJson(RowSet<Row> rows) {
+        List<JsonObject> result = new ArrayList<>();
+        for (Row row : rows) {
+            JsonObject jO = new JsonObject();
+            for (int i = 0; i < row.size(); i++) {
+                Object value = row.getValue(i);
+                if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+                    jO.put(row.getColumnName(i), value);
+                } else {
+                    jO.put(row.getColumnName(i), value.toString());
+                }
+            }
+            result.add(jO);
+        }
+        return result;
+    }
+}
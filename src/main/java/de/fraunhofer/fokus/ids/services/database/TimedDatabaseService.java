@@ -0,0 +1,63 @@
+package de.fraunhofer.fokus.ids.services.database;
+
+import de.fraunhofer.fokus.ids.services.AdapterMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Records the event bus round trip time of every call made through a DatabaseService proxy.
+ */
+class TimedDatabaseService implements DatabaseService {
+
+    private final DatabaseService proxy;
+    private final String address;
+
+    TimedDatabaseService(DatabaseService proxy, String address) {
+        this.proxy = proxy;
+        this.address = address;
+    }
+
+    @Override
+    public DatabaseService query(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        proxy.query(query, params, timed("query", resultHandler));
+        return this;
+    }
+
+    @Override
+    public DatabaseService update(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        proxy.update(query, params, timed("update", resultHandler));
+        return this;
+    }
+
+    @Override
+    public DatabaseService batchUpdate(String query, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        proxy.batchUpdate(query, params, timed("batchUpdate", resultHandler));
+        return this;
+    }
+
+    @Override
+    public DatabaseService batch(List<String> queries, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        proxy.batch(queries, timed("batch", resultHandler));
+        return this;
+    }
+
+    @Override
+    public DatabaseService transaction(List<String> queries, List<JsonArray> params, Handler<AsyncResult<List<Integer>>> resultHandler) {
+        proxy.transaction(queries, params, timed("transaction", resultHandler));
+        return this;
+    }
+
+    @Override
+    public DatabaseService migrate(int version, List<String> statements, Handler<AsyncResult<Boolean>> resultHandler) {
+        proxy.migrate(version, statements, timed("migrate", resultHandler));
+        return this;
+    }
+
+    private <T> Handler<AsyncResult<T>> timed(String action, Handler<AsyncResult<T>> resultHandler) {
+        return AdapterMetrics.timed(AdapterMetrics.EVENT_BUS_ROUND_TRIPS, resultHandler, "address", address, "action", action);
+    }
+}
@@ -0,0 +1,93 @@
+package de.fraunhofer.fokus.ids.services.conversion;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Feeds CSV to the JSON converter in chunks split at every possible position, the output must not depend on where
+ * the chunk boundaries fall.
+ */
+class CsvConverterTest {
+
+    @Test
+    void splitsInsideQuotedFields() {
+        assertSplitsConvertTo("id,text\n1,\"a \"\"quoted\"\", field\"\n2,\"two\nlines\"\n",
+                "[\n{\"id\":\"1\",\"text\":\"a \\\"quoted\\\", field\"},\n{\"id\":\"2\",\"text\":\"two\\nlines\"}\n]");
+    }
+
+    @Test
+    void splitsInsideMultiByteCharacters() {
+        assertSplitsConvertTo("stadt,preis\nKöln,5 €\n\"Zürich, 🚲\",7\n",
+                "[\n{\"stadt\":\"Köln\",\"preis\":\"5 €\"},\n{\"stadt\":\"Zürich, 🚲\",\"preis\":\"7\"}\n]");
+    }
+
+    @Test
+    void splitsCrlfAcrossChunks() {
+        assertSplitsConvertTo("a,b\r\n1,2\r\n\r\n3,4\r\n",
+                "[\n{\"a\":\"1\",\"b\":\"2\"},\n{\"a\":\"3\",\"b\":\"4\"}\n]");
+        assertEquals("[\n{\"a\":\"1\",\"b\":\"2\"}\n]", convert(Arrays.asList("a,b\r", "\n1,2\r", "\n")));
+    }
+
+    @Test
+    void stripsByteOrderMark() {
+        assertSplitsConvertTo("\uFEFFid,name\n1,x\n", "[\n{\"id\":\"1\",\"name\":\"x\"}\n]");
+    }
+
+    @Test
+    void keepsLastRecordWithoutTrailingNewline() {
+        assertSplitsConvertTo("a,b\n1,2\n3,4", "[\n{\"a\":\"1\",\"b\":\"2\"},\n{\"a\":\"3\",\"b\":\"4\"}\n]");
+        assertSplitsConvertTo("a\n\"\"", "[\n{\"a\":\"\"}\n]");
+    }
+
+    @Test
+    void failsOnUnterminatedQuote() {
+        CsvConverter converter = new CsvToJsonConverter();
+        converter.convert(Buffer.buffer("a,b\n1,\"open\nfield"));
+        assertThrows(IllegalArgumentException.class, converter::end);
+    }
+
+    @Test
+    void escapesControlCharacters() {
+        assertSplitsConvertTo("a,b\n\"tab\there\",\"bell\u0007 back\\slash\r\"\n",
+                "[\n{\"a\":\"tab\\there\",\"b\":\"bell\\u0007 back\\\\slash\\r\"}\n]");
+    }
+
+    @Test
+    void countsRecordsWithoutHeader() {
+        CsvConverter converter = new CsvToJsonConverter(';');
+        converter.convert(Buffer.buffer("a;b\n1;2\n"));
+        converter.convert(Buffer.buffer("3;4\n"));
+        converter.end();
+        assertEquals(2, converter.getRecords());
+    }
+
+    /**
+     * Converts the CSV in one chunk and in two chunks split at every byte position.
+     */
+    private void assertSplitsConvertTo(String csv, String expected) {
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= bytes.length; split++) {
+            CsvConverter converter = new CsvToJsonConverter();
+            Buffer output = Buffer.buffer()
+                    .appendBuffer(converter.convert(Buffer.buffer(Arrays.copyOfRange(bytes, 0, split))))
+                    .appendBuffer(converter.convert(Buffer.buffer(Arrays.copyOfRange(bytes, split, bytes.length))))
+                    .appendBuffer(converter.end());
+            assertEquals(expected, output.toString(StandardCharsets.UTF_8.name()), "split at byte " + split);
+        }
+    }
+
+    private String convert(Iterable<String> chunks) {
+        CsvConverter converter = new CsvToJsonConverter();
+        Buffer output = Buffer.buffer();
+        for (String chunk : chunks) {
+            output.appendBuffer(converter.convert(Buffer.buffer(chunk)));
+        }
+        return output.appendBuffer(converter.end()).toString(StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,202 @@
+package de.fraunhofer.fokus.ids.services.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the PostgreSQL implementation against an embedded PostgreSQL server.
+ */
+@ExtendWith(VertxExtension.class)
+class PostgresDatabaseServiceImplTest {
+
+    private static EmbeddedPostgres postgres;
+
+    private PgPool client;
+    private DatabaseService databaseService;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext context) {
+        PgConnectOptions connectOptions = new PgConnectOptions()
+                .setHost("localhost")
+                .setPort(postgres.getPort())
+                .setDatabase("postgres")
+                .setUser("postgres");
+        client = PgPool.pool(vertx, connectOptions, new PoolOptions().setMaxSize(4));
+        databaseService = new PostgresDatabaseServiceImpl(client, ready -> {});
+        client.query("DROP TABLE IF EXISTS items, schema_version").execute(context.succeeding(dropped ->
+                client.query("CREATE TABLE schema_version (version INTEGER PRIMARY KEY)").execute(context.succeeding(created ->
+                        context.completeNow()))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void rewritesPlaceholdersOutsideOfLiterals(VertxTestContext context) {
+        databaseService.query("SELECT CAST(? AS TEXT) AS value, '?' AS literal", new JsonArray().add("x"), context.succeeding(rows -> context.verify(() -> {
+            assertEquals(1, rows.size());
+            assertEquals("x", rows.get(0).getString("value"));
+            assertEquals("?", rows.get(0).getString("literal"));
+            context.completeNow();
+        })));
+    }
+
+    @Test
+    void rollsBackFailedBatchUpdate(VertxTestContext context) {
+        String insert = "INSERT INTO items values(?, ?)";
+        this.<List<JsonObject>>call(h -> databaseService.update("CREATE TABLE items (id TEXT PRIMARY KEY, name TEXT)", new JsonArray(), h))
+                .compose(created -> failure(this.<List<Integer>>call(h -> databaseService.batchUpdate(insert,
+                        Arrays.asList(new JsonArray().add("a").add("first"), new JsonArray().add("a").add("duplicate")), h))))
+                .compose(v -> count("items"))
+                .compose(count -> {
+                    context.verify(() -> assertEquals(0, count));
+                    return this.<List<Integer>>call(h -> databaseService.batchUpdate(insert,
+                            Arrays.asList(new JsonArray().add("a").add("first"), new JsonArray().add("b").add("second")), h));
+                })
+                .compose(updated -> {
+                    context.verify(() -> assertEquals(Arrays.asList(1, 1), updated));
+                    return count("items");
+                })
+                .onComplete(context.succeeding(count -> context.verify(() -> {
+                    assertEquals(2, count);
+                    context.completeNow();
+                })));
+    }
+
+    @Test
+    void replacesRowsInOneTransaction(VertxTestContext context) {
+        List<String> replace = Arrays.asList("DELETE FROM items WHERE name = ?", "INSERT INTO items values(?, ?)");
+        this.<List<JsonObject>>call(h -> databaseService.update("CREATE TABLE items (id TEXT PRIMARY KEY, name TEXT)", new JsonArray(), h))
+                .compose(created -> this.<List<JsonObject>>call(h -> databaseService.update("INSERT INTO items values(?, ?)",
+                        new JsonArray().add("a").add("first"), h)))
+                .compose(inserted -> failure(this.<List<Integer>>call(h -> databaseService.transaction(replace,
+                        Arrays.asList(new JsonArray().add("first"), new JsonArray().add("a").add("x").add("superfluous")), h))))
+                .compose(v -> count("items"))
+                .compose(count -> {
+                    context.verify(() -> assertEquals(1, count));
+                    return this.<List<Integer>>call(h -> databaseService.transaction(replace,
+                            Arrays.asList(new JsonArray().add("first"), new JsonArray().add("a").add("second")), h));
+                })
+                .compose(updated -> {
+                    context.verify(() -> assertEquals(Arrays.asList(1, 1), updated));
+                    return this.<List<JsonObject>>call(h -> databaseService.query("SELECT name FROM items", new JsonArray(), h));
+                })
+                .onComplete(context.succeeding(rows -> context.verify(() -> {
+                    assertEquals(1, rows.size());
+                    assertEquals("second", rows.get(0).getString("name"));
+                    context.completeNow();
+                })));
+    }
+
+    @Test
+    void migratesVersionOnce(VertxTestContext context) {
+        List<String> statements = Collections.singletonList("CREATE TABLE items (id TEXT PRIMARY KEY)");
+        this.<Boolean>call(h -> databaseService.migrate(1, statements, h))
+                .compose(migrated -> {
+                    context.verify(() -> assertTrue(migrated));
+                    return this.<Boolean>call(h -> databaseService.migrate(1, statements, h));
+                })
+                .compose(migrated -> {
+                    context.verify(() -> assertFalse(migrated));
+                    return count("schema_version");
+                })
+                .onComplete(context.succeeding(count -> context.verify(() -> {
+                    assertEquals(1, count);
+                    context.completeNow();
+                })));
+    }
+
+    @Test
+    void serializesConcurrentMigrations(VertxTestContext context) {
+        List<String> statements = Collections.singletonList("CREATE TABLE items (id TEXT PRIMARY KEY)");
+        Future<Boolean> first = call(h -> databaseService.migrate(1, statements, h));
+        Future<Boolean> second = call(h -> databaseService.migrate(1, statements, h));
+        CompositeFuture.all(first, second)
+                .compose(migrated -> {
+                    context.verify(() -> assertNotEquals(first.result(), second.result()));
+                    return count("schema_version");
+                })
+                .onComplete(context.succeeding(count -> context.verify(() -> {
+                    assertEquals(1, count);
+                    context.completeNow();
+                })));
+    }
+
+    @Test
+    void rollsBackFailedMigration(VertxTestContext context) {
+        List<String> statements = Arrays.asList("CREATE TABLE items (id TEXT PRIMARY KEY)", "SELECT * FROM missing");
+        failure(this.<Boolean>call(h -> databaseService.migrate(1, statements, h)))
+                .compose(v -> count("schema_version"))
+                .onComplete(context.succeeding(count -> context.verify(() -> {
+                    assertEquals(0, count);
+                    context.completeNow();
+                })));
+    }
+
+    private Future<Integer> count(String table) {
+        return this.<List<JsonObject>>call(h -> databaseService.query("SELECT COUNT(*) AS count FROM " + table, new JsonArray(), h))
+                .map(rows -> rows.get(0).getInteger("count"));
+    }
+
+    /**
+     * @return a future succeeding if the given one fails
+     */
+    private Future<Void> failure(Future<?> future) {
+        Promise<Void> promise = Promise.promise();
+        future.onComplete(reply -> {
+            if (reply.succeeded()) {
+                promise.fail("Expected a failure.");
+            } else {
+                promise.complete();
+            }
+        });
+        return promise.future();
+    }
+
+    private <T> Future<T> call(Consumer<Handler<AsyncResult<T>>> call) {
+        Promise<T> promise = Promise.promise();
+        call.accept(promise);
+        return promise.future();
+    }
+}